@@ -30,6 +30,7 @@ import io.icker.factions.core.FactionsManager;
 import io.icker.factions.core.InteractionManager;
 import io.icker.factions.core.ServerManager;
 import io.icker.factions.core.SoundManager;
+import io.icker.factions.core.TransferManager;
 import io.icker.factions.core.WorldManager;
 import io.icker.factions.util.BlueMapWrapper;
 import io.icker.factions.util.Command;
@@ -48,6 +49,7 @@ import net.minecraft.server.command.ServerCommandSource;
 public class FactionsMod implements ModInitializer {
     public static Logger LOGGER = LogManager.getLogger("Factions");
     public static final String MODID = "factions";
+    public static final boolean DEBUG = FabricLoader.getInstance().isDevelopmentEnvironment();
 
     public static Config CONFIG = Config.load();
     public static DynmapWrapper dynmap;
@@ -72,6 +74,7 @@ public class FactionsMod implements ModInitializer {
         InteractionManager.register();
         ServerManager.register();
         SoundManager.register();
+        TransferManager.register();
         WorldManager.register();
 
         if (FactionsMod.CONFIG.JOURNEYFACTIONS_INTEGRATION) {
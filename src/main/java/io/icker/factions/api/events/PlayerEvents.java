@@ -1,10 +1,11 @@
 package io.icker.factions.api.events;
 
+import java.util.List;
+
 import io.icker.factions.api.persistents.Faction;
 
 import net.fabricmc.fabric.api.event.Event;
 import net.fabricmc.fabric.api.event.EventFactory;
-//import net.minecraft.block.BlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.damage.DamageSource;
 import net.minecraft.entity.player.PlayerEntity;
@@ -12,9 +13,8 @@ import net.minecraft.item.ItemUsageContext;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.ActionResult;
 import net.minecraft.util.math.BlockPos;
-//import net.minecraft.world.BlockView;
 import net.minecraft.world.World;
-//import net.minecraft.world.explosion.Explosion;
+import net.minecraft.world.explosion.Explosion;
 
 /** Events related to player actions */
 public class PlayerEvents {
@@ -48,33 +48,35 @@ public class PlayerEvents {
                                 return ActionResult.PASS;
                             });
 
-    // public static final Event<ExplodeBlock> EXPLODE_BLOCK =
-    //         EventFactory.createArrayBacked(
-    //                 ExplodeBlock.class,
-    //                 callbacks ->
-    //                         (explosion, world, pos, state) -> {
-    //                             for (ExplodeBlock callback : callbacks) {
-    //                                 ActionResult result = callback.onExplodeBlock(explosion, world, pos, state);
-    //                                 if (result != ActionResult.PASS) {
-    //                                     return result;
-    //                                 }
-    //                             }
-    //                             return ActionResult.PASS;
-    //                         });
-
-    // public static final Event<ExplodeDamage> EXPLODE_DAMAGE =
-    //         EventFactory.createArrayBacked(
-    //                 ExplodeDamage.class,
-    //                 callbacks ->
-    //                         (explosion, entity) -> {
-    //                             for (ExplodeDamage callback : callbacks) {
-    //                                 ActionResult result = callback.onExplodeDamage(explosion, entity);
-    //                                 if (result != ActionResult.PASS) {
-    //                                     return result;
-    //                                 }
-    //                             }
-    //                             return ActionResult.PASS;
-    //                         });
+    /**
+     * Called once per explosion before it destroys blocks, with every block it would destroy.
+     * Listeners remove the positions they protect from the list.
+     */
+    public static final Event<ExplodeBlocks> EXPLODE_BLOCKS =
+            EventFactory.createArrayBacked(
+                    ExplodeBlocks.class,
+                    callbacks ->
+                            (explosion, world, blocks) -> {
+                                for (ExplodeBlocks callback : callbacks) {
+                                    callback.onExplodeBlocks(explosion, world, blocks);
+                                }
+                            });
+
+    /** Called when an explosion is about to damage an entity */
+    public static final Event<ExplodeDamage> EXPLODE_DAMAGE =
+            EventFactory.createArrayBacked(
+                    ExplodeDamage.class,
+                    callbacks ->
+                            (explosion, entity) -> {
+                                for (ExplodeDamage callback : callbacks) {
+                                    ActionResult result =
+                                            callback.onExplodeDamage(explosion, entity);
+                                    if (result != ActionResult.PASS) {
+                                        return result;
+                                    }
+                                }
+                                return ActionResult.PASS;
+                            });
 
     /**
      * Called when a player tries to use a block that has an inventory (uses the locking mechanism)
@@ -178,15 +180,15 @@ public class PlayerEvents {
         ActionResult onPlaceBlock(ItemUsageContext context);
     }
 
-    // @FunctionalInterface
-    // public interface ExplodeBlock {
-    //     ActionResult onExplodeBlock(Explosion explosion, BlockView world, BlockPos pos, BlockState state);
-    // }
+    @FunctionalInterface
+    public interface ExplodeBlocks {
+        void onExplodeBlocks(Explosion explosion, World world, List<BlockPos> blocks);
+    }
 
-    // @FunctionalInterface
-    // public interface ExplodeDamage {
-    //     ActionResult onExplodeDamage(Explosion explosion, Entity entity);
-    // }
+    @FunctionalInterface
+    public interface ExplodeDamage {
+        ActionResult onExplodeDamage(Explosion explosion, Entity entity);
+    }
 
     @FunctionalInterface
     public interface UseInventory {
@@ -1,18 +1,55 @@
 package io.icker.factions.api.persistents;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
 import io.icker.factions.api.events.ClaimEvents;
 import io.icker.factions.api.persistents.User.Rank;
+import io.icker.factions.database.ClaimFormat;
 import io.icker.factions.database.Database;
 import io.icker.factions.database.Field;
 import io.icker.factions.database.Name;
-import io.icker.factions.util.WorldUtils;
+import io.icker.factions.util.DimensionHandle;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 
 @Name("Claim")
 public class Claim {
-    private static final HashMap<String, Claim> STORE = Database.load(Claim.class, c -> c.getKey());
+    /**
+     * One map per dimension (indexed by {@link DimensionHandle#getIndex()}), keyed by the packed
+     * chunk coordinate from {@link ChunkPos#toLong(int, int)}
+     */
+    private static ArrayList<Long2ObjectOpenHashMap<Claim>> STORE;
+
+    /**
+     * Secondary index of every claim owned by a faction, kept in step with {@link #STORE}
+     */
+    private static HashMap<UUID, FactionClaims> BY_FACTION;
+
+    private static class FactionClaims {
+        private final ArrayList<Long2ObjectOpenHashMap<Claim>> levels = new ArrayList<>();
+        private int count = 0;
+
+        private Long2ObjectOpenHashMap<Claim> getLevel(DimensionHandle dimension, boolean create) {
+            return Claim.getLevel(levels, dimension, create);
+        }
+
+        private void add(Claim claim) {
+            if (getLevel(claim.getDimension(), true).put(claim.getPackedChunk(), claim) == null) {
+                count++;
+            }
+        }
+
+        private void remove(Claim claim) {
+            Long2ObjectOpenHashMap<Claim> level = getLevel(claim.getDimension(), false);
+            if (level != null && level.remove(claim.getPackedChunk()) != null) {
+                count--;
+            }
+        }
+    }
 
     @Field("X")
     public int x;
@@ -32,10 +69,17 @@ public class Claim {
     @Field("AccessLevel")
     public Rank accessLevel;
 
+    private DimensionHandle dimension;
+
     public Claim(int x, int z, String level, UUID factionID) {
+        this(x, z, DimensionHandle.of(level), factionID);
+    }
+
+    public Claim(int x, int z, DimensionHandle dimension, UUID factionID) {
         this.x = x;
         this.z = z;
-        this.level = level;
+        this.level = dimension.getId();
+        this.dimension = dimension;
         this.factionID = factionID;
         this.accessLevel = Rank.MEMBER;
     }
@@ -46,34 +90,233 @@ public class Claim {
         return String.format("%s-%d-%d", level, x, z);
     }
 
+    public long getPackedChunk() {
+        return ChunkPos.toLong(x, z);
+    }
+
+    /**
+     * Also replaces {@link #level} with the id shared by the handle, so claims read from storage do
+     * not each hold their own copy of the string
+     */
+    public DimensionHandle getDimension() {
+        if (dimension == null) {
+            dimension = DimensionHandle.of(level);
+            level = dimension.getId();
+        }
+        return dimension;
+    }
+
+    /**
+     * Reads and indexes every claim, once per server start
+     */
+    public static void load() {
+        STORE = new ArrayList<>();
+        BY_FACTION = new HashMap<>();
+
+        for (Claim claim : Database.load(Claim.class, c -> c.getKey(), ClaimFormat.INSTANCE)
+                .values()) {
+            put(claim);
+        }
+    }
+
+    private static ArrayList<Long2ObjectOpenHashMap<Claim>> store() {
+        if (STORE == null) {
+            throw new IllegalStateException("Claims are not loaded yet");
+        }
+        return STORE;
+    }
+
+    private static HashMap<UUID, FactionClaims> byFaction() {
+        if (BY_FACTION == null) {
+            throw new IllegalStateException("Claims are not loaded yet");
+        }
+        return BY_FACTION;
+    }
+
+    private static Long2ObjectOpenHashMap<Claim> getLevelStore(DimensionHandle dimension,
+            boolean create) {
+        return getLevel(store(), dimension, create);
+    }
+
+    private static Long2ObjectOpenHashMap<Claim> getLevel(
+            ArrayList<Long2ObjectOpenHashMap<Claim>> levels, DimensionHandle dimension,
+            boolean create) {
+        int index = dimension.getIndex();
+        if (index < levels.size() && levels.get(index) != null) {
+            return levels.get(index);
+        }
+        if (!create) {
+            return null;
+        }
+
+        while (levels.size() <= index) {
+            levels.add(null);
+        }
+        Long2ObjectOpenHashMap<Claim> level = new Long2ObjectOpenHashMap<>();
+        levels.set(index, level);
+        return level;
+    }
+
+    private static void put(Claim claim) {
+        Claim previous = getLevelStore(claim.getDimension(), true).put(claim.getPackedChunk(), claim);
+        if (previous != null) {
+            unindex(previous);
+        }
+        byFaction().computeIfAbsent(claim.factionID, id -> new FactionClaims()).add(claim);
+    }
+
+    private static void unindex(Claim claim) {
+        FactionClaims factionClaims = byFaction().get(claim.factionID);
+        if (factionClaims == null) {
+            return;
+        }
+
+        factionClaims.remove(claim);
+        if (factionClaims.count == 0) {
+            byFaction().remove(claim.factionID);
+        }
+    }
+
     public static Claim get(int x, int z, String level) {
-        return STORE.get(String.format("%s-%d-%d", level, x, z));
+        return get(ChunkPos.toLong(x, z), DimensionHandle.of(level));
+    }
+
+    /**
+     * Looks up a claim without allocating
+     *
+     * @param packedChunk The chunk coordinate packed with {@link ChunkPos#toLong(int, int)}
+     * @param dimension The dimension of the chunk
+     */
+    public static Claim get(long packedChunk, DimensionHandle dimension) {
+        Long2ObjectOpenHashMap<Claim> levelStore = getLevelStore(dimension, false);
+        return levelStore == null ? null : levelStore.get(packedChunk);
+    }
+
+    /**
+     * Finds the claim covering a block. The chunk is found arithmetically, so this never loads or
+     * generates it.
+     */
+    public static Claim getAt(BlockPos pos, DimensionHandle dimension) {
+        return get(getPackedChunk(pos), dimension);
+    }
+
+    /**
+     * @return The packed coordinate of the chunk holding a block
+     */
+    public static long getPackedChunk(BlockPos pos) {
+        return ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
     }
 
     public static List<Claim> getByFaction(UUID factionID) {
-        return STORE.values().stream().filter(c -> c.factionID.equals(factionID)).toList();
+        FactionClaims factionClaims = byFaction().get(factionID);
+        if (factionClaims == null) {
+            return List.of();
+        }
+
+        ArrayList<Claim> claims = new ArrayList<>(factionClaims.count);
+        for (Long2ObjectOpenHashMap<Claim> level : factionClaims.levels) {
+            if (level != null) {
+                claims.addAll(level.values());
+            }
+        }
+        return claims;
+    }
+
+    public static List<Claim> getByFaction(UUID factionID, DimensionHandle dimension) {
+        FactionClaims factionClaims = byFaction().get(factionID);
+        if (factionClaims == null) {
+            return List.of();
+        }
+
+        Long2ObjectOpenHashMap<Claim> level = factionClaims.getLevel(dimension, false);
+        return level == null ? List.of() : new ArrayList<>(level.values());
+    }
+
+    /**
+     * @return The number of claims owned by a faction, in constant time
+     */
+    public static int countByFaction(UUID factionID) {
+        FactionClaims factionClaims = byFaction().get(factionID);
+        return factionClaims == null ? 0 : factionClaims.count;
+    }
+
+    public static int countByFaction(UUID factionID, DimensionHandle dimension) {
+        FactionClaims factionClaims = byFaction().get(factionID);
+        if (factionClaims == null) {
+            return 0;
+        }
+
+        Long2ObjectOpenHashMap<Claim> level = factionClaims.getLevel(dimension, false);
+        return level == null ? 0 : level.size();
+    }
+
+    private static List<Claim> all() {
+        ArrayList<Claim> claims = new ArrayList<>();
+        for (Long2ObjectOpenHashMap<Claim> levelStore : store()) {
+            if (levelStore != null) {
+                claims.addAll(levelStore.values());
+            }
+        }
+        return claims;
     }
 
     public static void audit() {
-        STORE.values().removeIf((claim) -> Faction.get(claim.factionID) == null
-                || !WorldUtils.isValid(claim.level));
+        for (Long2ObjectOpenHashMap<Claim> levelStore : store()) {
+            if (levelStore == null) {
+                continue;
+            }
+
+            ObjectIterator<Claim> iterator = levelStore.values().iterator();
+            while (iterator.hasNext()) {
+                Claim claim = iterator.next();
+                if (Faction.get(claim.factionID) == null || !claim.getDimension().isValid()) {
+                    iterator.remove();
+                    unindex(claim);
+                    Database.markRemoved(Claim.class, claim);
+                }
+            }
+        }
     }
 
     public static void add(Claim claim) {
-        STORE.put(claim.getKey(), claim);
+        put(claim);
+        Database.markDirty(Claim.class, claim);
         ClaimEvents.ADD.invoker().onAdd(claim);
     }
 
+    /**
+     * Adds a claim without invoking {@link ClaimEvents#ADD}, for bulk imports that refresh their
+     * listeners once at the end
+     */
+    public static void addQuietly(Claim claim) {
+        put(claim);
+        Database.markDirty(Claim.class, claim);
+    }
+
     public Faction getFaction() {
         return Faction.get(factionID);
     }
 
     public void remove() {
-        STORE.remove(getKey());
+        Long2ObjectOpenHashMap<Claim> levelStore = getLevelStore(getDimension(), false);
+        if (levelStore != null) {
+            Claim removed = levelStore.remove(getPackedChunk());
+            if (removed != null) {
+                unindex(removed);
+                Database.markRemoved(Claim.class, removed);
+            }
+        }
         ClaimEvents.REMOVE.invoker().onRemove(x, z, level, Faction.get(factionID));
     }
 
+    /**
+     * Queues this claim for the next journal write
+     */
+    public void markDirty() {
+        Database.markDirty(Claim.class, this);
+    }
+
     public static void save() {
-        Database.save(Claim.class, STORE.values().stream().toList());
+        Database.save(Claim.class, all());
     }
 }
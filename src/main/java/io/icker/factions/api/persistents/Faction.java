@@ -2,7 +2,9 @@ package io.icker.factions.api.persistents;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.UUID;
 import org.jetbrains.annotations.Nullable;
@@ -11,16 +13,24 @@ import io.icker.factions.api.events.FactionEvents;
 import io.icker.factions.database.Database;
 import io.icker.factions.database.Field;
 import io.icker.factions.database.Name;
-import io.icker.factions.util.WorldUtils;
+import io.icker.factions.database.SafeStorage;
+import io.icker.factions.util.DimensionHandle;
 import net.minecraft.inventory.SimpleInventory;
 import net.minecraft.item.ItemStack;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Formatting;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.collection.DefaultedList;
 
 @Name("Faction")
 public class Faction {
-    private static final HashMap<UUID, Faction> STORE =
-            Database.load(Faction.class, Faction::getID);
+    private static HashMap<UUID, Faction> STORE;
+
+    /**
+     * Bumped by every change to a relationship or guest permission, which leaves every compiled
+     * {@link PermissionTable} stale
+     */
+    private static int permissionRevision = 0;
 
     @Field("ID")
     private UUID id;
@@ -53,7 +63,7 @@ public class Faction {
     private Home home;
 
     @Field("Safe")
-    private SimpleInventory safe = new SimpleInventory(54);
+    private SimpleInventory legacySafe;
 
     @Field("Invites")
     public ArrayList<UUID> invites = new ArrayList<>();
@@ -74,6 +84,24 @@ public class Faction {
     @Field("FirstClaimConfirmed")
     private boolean firstClaimConfirmed = false;
 
+    /**
+     * Running totals of member power, computed from the members on first use and then kept up
+     * to date by {@link User}
+     */
+    private int memberPower;
+    private int memberMaxPower;
+    private boolean powerAggregated = false;
+
+    private PermissionTable permissionTable;
+
+    /**
+     * The relationships by target, built from {@link #relationships} on first use. Factions
+     * missing from it are neutral.
+     */
+    private HashMap<UUID, Relationship> relationshipIndex;
+
+    private final LinkedHashMap<UUID, ServerPlayerEntity> onlineMembers = new LinkedHashMap<>();
+
     public Faction(String name, String description, String motd, Formatting color, boolean open) {
         this.id = UUID.randomUUID();
         this.name = name;
@@ -89,26 +117,57 @@ public class Faction {
         return id.toString();
     }
 
+    /**
+     * Reads every faction, once per server start
+     */
+    public static void load() {
+        STORE = Database.load(Faction.class, Faction::getID);
+
+        for (Faction faction : STORE.values()) {
+            if (faction.legacySafe != null && SafeStorage.migrate(faction.id, faction.legacySafe)) {
+                faction.legacySafe = null;
+                faction.markDirty();
+            }
+        }
+    }
+
+    private static HashMap<UUID, Faction> store() {
+        if (STORE == null) {
+            throw new IllegalStateException("Factions are not loaded yet");
+        }
+        return STORE;
+    }
+
     @Nullable
     public static Faction get(UUID id) {
-        return STORE.get(id);
+        return store().get(id);
     }
 
     @Nullable
     public static Faction getByName(String name) {
-        return STORE.values().stream().filter(f -> f.name.equals(name)).findFirst().orElse(null);
+        return store().values().stream().filter(f -> f.name.equals(name)).findFirst().orElse(null);
     }
 
+    /**
+     * Adds a faction, replacing any faction with the same id
+     */
     public static void add(Faction faction) {
-        STORE.put(faction.id, faction);
+        Faction previous = store().put(faction.id, faction);
+        if (previous != null && previous != faction) {
+            for (ServerPlayerEntity player : previous.getOnlineMembers()) {
+                faction.addOnlineMember(player);
+            }
+        }
+        faction.markDirty();
+        invalidatePermissions();
     }
 
     public static Collection<Faction> all() {
-        return STORE.values();
+        return store().values();
     }
 
     public static List<Faction> allBut(UUID id) {
-        return STORE.values().stream().filter(f -> f.id != id).toList();
+        return store().values().stream().filter(f -> f.id != id).toList();
     }
 
     public UUID getID() {
@@ -132,11 +191,12 @@ public class Faction {
     }
 
     public int getPower() {
-        return getUsers().stream().mapToInt(User::getPower).sum() + adminPower;
+        aggregatePower();
+        return memberPower + adminPower;
     }
 
     public int getDemesne() {
-        return getClaims().size();
+        return Claim.countByFaction(id);
     }
 
     public int getMaxPower() {
@@ -144,13 +204,11 @@ public class Faction {
     }
 
     public SimpleInventory getSafe() {
-        return safe;
+        return SafeStorage.get(id);
     }
 
     public DefaultedList<ItemStack> clearSafe() {
-        DefaultedList<ItemStack> stacks = this.safe.stacks;
-        this.safe = new SimpleInventory(54);
-        return stacks;
+        return SafeStorage.clear(id);
     }
 
     public boolean isOpen() {
@@ -159,26 +217,31 @@ public class Faction {
 
     public void setName(String name) {
         this.name = name;
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
     public void setDescription(String description) {
         this.description = description;
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
     public void setMOTD(String motd) {
         this.motd = motd;
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
     public void setColor(Formatting color) {
         this.color = color.getName();
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
     public void setOpen(boolean open) {
         this.open = open;
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
@@ -189,6 +252,7 @@ public class Faction {
     public void addAdminPower(int amount) {
         int oldPower = getPower();
         adminPower += amount;
+        markDirty();
         if (oldPower != getPower()) {
             FactionEvents.POWER_CHANGE.invoker().onPowerChange(this, oldPower);
         }
@@ -198,14 +262,34 @@ public class Faction {
         return User.getByFaction(id);
     }
 
+    /**
+     * @return The members of this faction that are currently online
+     */
+    public Collection<ServerPlayerEntity> getOnlineMembers() {
+        return Collections.unmodifiableCollection(onlineMembers.values());
+    }
+
+    void addOnlineMember(ServerPlayerEntity player) {
+        onlineMembers.put(player.getUuid(), player);
+    }
+
+    void removeOnlineMember(UUID playerID) {
+        onlineMembers.remove(playerID);
+    }
+
     public List<Claim> getClaims() {
         return Claim.getByFaction(id);
     }
 
+    public List<Claim> getClaims(String level) {
+        return Claim.getByFaction(id, DimensionHandle.of(level));
+    }
+
     public void removeAllClaims() {
         Claim.getByFaction(id).stream().forEach(Claim::remove);
         FactionEvents.REMOVE_ALL_CLAIMS.invoker().onRemoveAllClaims(this);
         firstClaimConfirmed = false;
+        markDirty();
     }
 
     public boolean addClaim(int x, int z, String level) {
@@ -218,12 +302,12 @@ public class Faction {
     }
 
     public boolean canClaimConnected(int x, int z, String level) {
-        return canClaimConnected(x, z, level,
-                Claim.getByFaction(id).stream().filter(claim -> claim.level.equals(level)).toList());
+        return canClaimConnected(x, z, level, getClaims(level));
     }
 
     public boolean canClaimConnected(int x, int z, String level, List<Claim> existingClaims) {
-        Claim existing = Claim.get(x, z, level);
+        DimensionHandle dimension = DimensionHandle.of(level);
+        Claim existing = Claim.get(ChunkPos.toLong(x, z), dimension);
         if (existing != null && existing.factionID.equals(id)) {
             return true;
         }
@@ -234,7 +318,7 @@ public class Faction {
 
         int[][] directions = new int[][] { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
         for (int[] dir : directions) {
-            Claim adjacent = Claim.get(x + dir[0], z + dir[1], level);
+            Claim adjacent = Claim.get(ChunkPos.toLong(x + dir[0], z + dir[1]), dimension);
             if (adjacent != null && adjacent.factionID.equals(id)) {
                 return true;
             }
@@ -253,28 +337,61 @@ public class Faction {
 
     public void setHome(Home home) {
         this.home = home;
+        markDirty();
         FactionEvents.SET_HOME.invoker().onSetHome(this, home);
     }
 
+    private HashMap<UUID, Relationship> getRelationshipIndex() {
+        if (relationshipIndex == null) {
+            relationshipIndex = new HashMap<>();
+            for (Relationship rel : relationships) {
+                relationshipIndex.put(rel.target, rel);
+            }
+        }
+        return relationshipIndex;
+    }
+
+    /**
+     * @return The relationship with a faction, or a new neutral one when there is none
+     */
     public Relationship getRelationship(UUID target) {
-        return relationships.stream().filter(rel -> rel.target.equals(target)).findFirst()
-                .orElse(new Relationship(target, Relationship.Status.NEUTRAL));
+        Relationship rel = getRelationshipIndex().get(target);
+        return rel != null ? rel : new Relationship(target, Relationship.Status.NEUTRAL);
+    }
+
+    /**
+     * @return The status this faction declared towards another, without allocating
+     */
+    public Relationship.Status getStatus(UUID target) {
+        Relationship rel = getRelationshipIndex().get(target);
+        return rel != null ? rel.status : Relationship.Status.NEUTRAL;
+    }
+
+    /**
+     * @return The status another faction declared towards this one
+     */
+    public Relationship.Status getReverseStatus(UUID target) {
+        Faction faction = Faction.get(target);
+        return faction != null ? faction.getStatus(id) : Relationship.Status.NEUTRAL;
     }
 
     public Relationship getReverse(Relationship rel) {
         return Faction.get(rel.target).getRelationship(id);
     }
 
+    /**
+     * Whether both factions declared the same status towards each other
+     */
+    public boolean isMutual(UUID target, Relationship.Status status) {
+        return getStatus(target) == status && getReverseStatus(target) == status;
+    }
+
     public boolean isMutualAllies(UUID target) {
-        Relationship rel = getRelationship(target);
-        return rel.status == Relationship.Status.ALLY
-                && getReverse(rel).status == Relationship.Status.ALLY;
+        return isMutual(target, Relationship.Status.ALLY);
     }
 
     public boolean isMutualWar(UUID target) {
-        Relationship rel = getRelationship(target);
-        return rel.status == Relationship.Status.WAR
-                && getReverse(rel).status == Relationship.Status.WAR;
+        return isMutual(target, Relationship.Status.WAR);
     }
 
     public List<Relationship> getMutualAllies() {
@@ -282,9 +399,7 @@ public class Faction {
     }
     
     public boolean isMutualFriendly(UUID target) {
-        Relationship rel = getRelationship(target);
-        return rel.status == Relationship.Status.FRIENDLY
-                && getReverse(rel).status == Relationship.Status.FRIENDLY;
+        return isMutual(target, Relationship.Status.FRIENDLY);
     }
 
     public List<Relationship> getMutualFriendly() {
@@ -298,7 +413,8 @@ public class Faction {
 
     public List<Relationship> getFriendlyOf() {
         return relationships.stream()
-                .filter(rel -> getReverse(rel).status == Relationship.Status.FRIENDLY).toList();
+                .filter(rel -> getReverseStatus(rel.target) == Relationship.Status.FRIENDLY)
+                .toList();
     }
 
     public List<Relationship> getWarWith() {
@@ -308,21 +424,44 @@ public class Faction {
 
     public List<Relationship> getWarOf() {
         return relationships.stream()
-                .filter(rel -> getReverse(rel).status == Relationship.Status.WAR).toList();
+                .filter(rel -> getReverseStatus(rel.target) == Relationship.Status.WAR).toList();
     }
 
     public void removeRelationship(UUID target) {
-        relationships = new ArrayList<>(
-                relationships.stream().filter(rel -> !rel.target.equals(target)).toList());
+        if (getRelationshipIndex().remove(target) != null) {
+            relationships.removeIf(rel -> rel.target.equals(target));
+        }
+        markDirty();
+        invalidatePermissions();
     }
 
     public void setRelationship(Relationship relationship) {
-        if (getRelationship(relationship.target) != null) {
-            removeRelationship(relationship.target);
-        }
+        removeRelationship(relationship.target);
         if (relationship.status != Relationship.Status.NEUTRAL
-                || !relationship.permissions.isEmpty())
+                || !relationship.permissions.isEmpty()) {
             relationships.add(relationship);
+            getRelationshipIndex().put(relationship.target, relationship);
+        }
+        markDirty();
+        invalidatePermissions();
+    }
+
+    /**
+     * @return The permissions this faction grants in its claims, compiled on first use
+     */
+    public PermissionTable getPermissionTable() {
+        if (permissionTable == null || permissionTable.revision != permissionRevision) {
+            permissionTable = new PermissionTable(this, relationships, permissionRevision);
+        }
+        return permissionTable;
+    }
+
+    /**
+     * Discards every compiled {@link PermissionTable}. Needed after changing guest permissions or
+     * the relationship settings of the config.
+     */
+    public static void invalidatePermissions() {
+        permissionRevision++;
     }
 
     public void remove() {
@@ -336,7 +475,10 @@ public class Faction {
             }
         }
         removeAllClaims();
-        STORE.remove(id);
+        SafeStorage.delete(id);
+        store().remove(id);
+        Database.markRemoved(Faction.class, this);
+        invalidatePermissions();
         FactionEvents.DISBAND.invoker().onDisband(this);
     }
 
@@ -351,23 +493,86 @@ public class Faction {
     }
 
     public static void audit() {
-        STORE.values().removeIf((faction) -> {
-            if (faction.home != null && !WorldUtils.isValid(faction.home.level)) {
+        invalidatePermissions();
+        store().values().removeIf((faction) -> {
+            if (faction.home != null && !DimensionHandle.of(faction.home.level).isValid()) {
                 faction.setHome(null);
             }
 
-            faction.relationships.removeIf((rel) -> Faction.get(rel.target) == null);
+            if (faction.relationships.removeIf((rel) -> Faction.get(rel.target) == null)) {
+                faction.markDirty();
+            }
+            faction.relationshipIndex = null;
 
-            return faction.getUsers().stream().noneMatch((user) -> user.rank == User.Rank.OWNER);
+            if (faction.getUsers().stream().noneMatch((user) -> user.rank == User.Rank.OWNER)) {
+                Database.markRemoved(Faction.class, faction);
+                return true;
+            }
+            return false;
         });
     }
 
+    /**
+     * Queues this faction for the next journal write
+     */
+    public void markDirty() {
+        Database.markDirty(Faction.class, this);
+    }
+
     public static void save() {
-        Database.save(Faction.class, STORE.values().stream().toList());
+        Database.save(Faction.class, store().values().stream().toList());
     }
 
     public int calculateMaxPower() {
-        return getUsers().stream().mapToInt(User::getMaxPower).sum() + adminPower;
+        aggregatePower();
+        return memberMaxPower + adminPower;
+    }
+
+    private void aggregatePower() {
+        if (powerAggregated) {
+            return;
+        }
+
+        List<User> users = getUsers();
+        memberPower = users.stream().mapToInt(User::getPower).sum();
+        memberMaxPower = users.stream().mapToInt(User::getMaxPower).sum();
+        powerAggregated = true;
+    }
+
+    /**
+     * Drops the running power totals of every faction, so they are recomputed from the members on
+     * next use. Needed when the power settings change.
+     */
+    public static void invalidatePowerTotals() {
+        for (Faction faction : store().values()) {
+            faction.powerAggregated = false;
+        }
+    }
+
+    /**
+     * Applies a change in member power to the running totals. Called by {@link User} whenever a
+     * member's power changes or a member joins or leaves.
+     */
+    void adjustMemberPower(int power, int maxPower) {
+        if (!powerAggregated) {
+            return;
+        }
+
+        memberPower += power;
+        memberMaxPower += maxPower;
+
+        if (FactionsMod.DEBUG) {
+            List<User> users = getUsers();
+            int expectedPower = users.stream().mapToInt(User::getPower).sum();
+            int expectedMaxPower = users.stream().mapToInt(User::getMaxPower).sum();
+            if (expectedPower != memberPower || expectedMaxPower != memberMaxPower) {
+                FactionsMod.LOGGER.error(
+                        "Power aggregate of faction {} drifted (power {} != {}, max power {} != {})",
+                        name, memberPower, expectedPower, memberMaxPower, expectedMaxPower);
+                memberPower = expectedPower;
+                memberMaxPower = expectedMaxPower;
+            }
+        }
     }
 
     public void notifyPowerChange(int oldPower) {
@@ -382,6 +587,7 @@ public class Faction {
 
     public void setUnclaimCooldownExpiry(long expiry) {
         this.unclaimCooldownExpiry = expiry;
+        markDirty();
     }
 
     public boolean isUnclaimOnCooldown() {
@@ -398,6 +604,7 @@ public class Faction {
 
     public void setClaimCooldownExpiry(long expiry) {
         this.claimCooldownExpiry = expiry;
+        markDirty();
     }
 
     public boolean isClaimOnCooldown() {
@@ -414,6 +621,7 @@ public class Faction {
 
     public void setFirstClaimConfirmed(boolean confirmed) {
         this.firstClaimConfirmed = confirmed;
+        markDirty();
     }
 
     public Collection<User> getRelationships() {
@@ -0,0 +1,133 @@
+package io.icker.factions.api.persistents;
+
+import java.util.Collection;
+import java.util.UUID;
+import org.jetbrains.annotations.Nullable;
+import io.icker.factions.FactionsMod;
+import io.icker.factions.api.persistents.Relationship.Permissions;
+import io.icker.factions.api.persistents.User.Rank;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * The permissions a claim faction grants, compiled into bitmasks of {@link Permissions} so a check
+ * is a lookup and a bit test. Built on first use by {@link Faction#getPermissionTable()} and thrown
+ * away when any relationship or guest permission changes.
+ */
+public class PermissionTable {
+    private static final int ALL = (1 << Permissions.values().length) - 1;
+    private static final int RANKS = Rank.values().length + 1;
+
+    final int revision;
+
+    private final UUID id;
+    private final int guest;
+    private final int self;
+    private final int[] members = new int[RANKS * RANKS];
+    private final Object2IntOpenHashMap<UUID> relations = new Object2IntOpenHashMap<>();
+
+    PermissionTable(Faction faction, Collection<Relationship> relationships, int revision) {
+        this.revision = revision;
+        this.id = faction.getID();
+        this.guest = mask(faction.guest_permissions);
+        // Factions without a relationship are neutral, which grants the default permissions
+        relations.defaultReturnValue(
+                mask(FactionsMod.CONFIG.RELATIONSHIPS.DEFAULT_GUEST_PERMISSIONS));
+
+        boolean allyOverrides = FactionsMod.CONFIG.RELATIONSHIPS.ALLY_OVERRIDES_PERMISSIONS;
+        for (Relationship rel : relationships) {
+            if (allyOverrides && faction.isMutualAllies(rel.target)) {
+                relations.put(rel.target, ALL);
+            } else {
+                relations.put(rel.target, mask(rel.permissions));
+            }
+        }
+        this.self = relations.getInt(id);
+
+        for (int rank = 0; rank < RANKS; rank++) {
+            for (int access = 0; access < RANKS; access++) {
+                Rank actorRank = getRank(rank);
+                Rank accessLevel = getRank(access);
+                int allowed = 0;
+                if (getRankLevel(accessLevel) <= getRankLevel(actorRank)) {
+                    allowed = ALL;
+                } else if (actorRank == Rank.GUEST && accessLevel == Rank.MEMBER) {
+                    allowed = guest;
+                }
+                members[rank * RANKS + access] = allowed;
+            }
+        }
+    }
+
+    /**
+     * Whether a player may act in a claim of this faction
+     *
+     * @param actor The faction of the player, or null when they are in none
+     * @param rank The rank of the player in their faction
+     * @param accessLevel The access level of the claim
+     */
+    public boolean allows(@Nullable Faction actor, @Nullable Rank rank, @Nullable Rank accessLevel,
+            Permissions permission) {
+        return (getAllowed(actor, rank, accessLevel) & (1 << permission.ordinal())) != 0;
+    }
+
+    /**
+     * @return The bitmask of permissions, indexed by ordinal, granted to a player
+     */
+    public int getAllowed(@Nullable Faction actor, @Nullable Rank rank,
+            @Nullable Rank accessLevel) {
+        if (actor == null) {
+            return guest;
+        }
+
+        // Relationship permissions only reach claims open to every member
+        boolean memberAccess = accessLevel == Rank.MEMBER;
+        if (actor.getID().equals(id)) {
+            return members[index(rank) * RANKS + index(accessLevel)] | (memberAccess ? self : 0);
+        }
+        return memberAccess ? relations.getInt(actor.getID()) : 0;
+    }
+
+    private static int mask(Collection<Permissions> permissions) {
+        int mask = 0;
+        for (Permissions permission : permissions) {
+            mask |= 1 << permission.ordinal();
+        }
+        return mask;
+    }
+
+    private static int index(@Nullable Rank rank) {
+        return rank == null ? RANKS - 1 : rank.ordinal();
+    }
+
+    @Nullable
+    private static Rank getRank(int index) {
+        return index == RANKS - 1 ? null : Rank.values()[index];
+    }
+
+    private static int getRankLevel(@Nullable Rank rank) {
+        if (rank == null) {
+            return -2;
+        }
+
+        switch (rank) {
+            case OWNER -> {
+                return 3;
+            }
+            case LEADER -> {
+                return 2;
+            }
+            case COMMANDER -> {
+                return 1;
+            }
+            case MEMBER -> {
+                return 0;
+            }
+            case GUEST -> {
+                return -1;
+            }
+            default -> {
+                return -2;
+            }
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package io.icker.factions.api.persistents;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -14,10 +16,16 @@ import io.icker.factions.api.events.FactionEvents;
 import io.icker.factions.database.Database;
 import io.icker.factions.database.Field;
 import io.icker.factions.database.Name;
+import net.minecraft.server.network.ServerPlayerEntity;
 
 @Name("User")
 public class User {
-    private static final HashMap<UUID, User> STORE = Database.load(User.class, User::getID);
+    private static HashMap<UUID, User> STORE;
+
+    /**
+     * Members of each faction, kept in step with {@link #joinFaction} and {@link #leaveFaction}
+     */
+    private static HashMap<UUID, LinkedHashSet<User>> BY_FACTION;
 
     public enum ChatMode {
         FOCUS, FACTION, GLOBAL
@@ -61,6 +69,9 @@ public class User {
 
     private User spoof;
 
+    @Nullable
+    private ServerPlayerEntity player;
+
     public User(UUID id) {
         this.id = id;
         this.power = FactionsMod.CONFIG.POWER.PLAYER_START;
@@ -76,21 +87,132 @@ public class User {
         return id.toString();
     }
 
+    /**
+     * Reads and indexes every user, once per server start
+     */
+    public static void load() {
+        STORE = Database.load(User.class, User::getID);
+        STORE.values().removeIf(User::hasDefaultState);
+        BY_FACTION = new HashMap<>();
+
+        for (User user : STORE.values()) {
+            index(user);
+        }
+    }
+
+    private static HashMap<UUID, User> store() {
+        if (STORE == null) {
+            throw new IllegalStateException("Users are not loaded yet");
+        }
+        return STORE;
+    }
+
+    private static HashMap<UUID, LinkedHashSet<User>> byFaction() {
+        if (BY_FACTION == null) {
+            throw new IllegalStateException("Users are not loaded yet");
+        }
+        return BY_FACTION;
+    }
+
+    /**
+     * Returns the user with an id, creating it when needed. A new user is only kept in memory until
+     * it holds state worth saving, see {@link #hasDefaultState()}.
+     */
     @NotNull
     public static User get(UUID id) {
-        if (!STORE.containsKey(id)) {
-            User.add(new User(id));
+        User user = store().get(id);
+        if (user == null) {
+            user = new User(id);
+            store().put(id, user);
         }
-        return STORE.get(id);
+        return user;
     }
 
     public static List<User> getByFaction(UUID factionID) {
-        return STORE.values().stream().filter(m -> m.isInFaction() && m.factionID.equals(factionID))
-                .toList();
+        LinkedHashSet<User> members = byFaction().get(factionID);
+        return members == null ? List.of() : new ArrayList<>(members);
     }
 
+    private static void index(User user) {
+        if (user.isInFaction()) {
+            byFaction().computeIfAbsent(user.factionID, id -> new LinkedHashSet<>()).add(user);
+        }
+    }
+
+    private static void unindex(User user) {
+        if (!user.isInFaction()) {
+            return;
+        }
+
+        LinkedHashSet<User> members = byFaction().get(user.factionID);
+        if (members != null) {
+            members.remove(user);
+            if (members.isEmpty()) {
+                byFaction().remove(user.factionID);
+            }
+        }
+    }
+
+    /**
+     * Adds a user, replacing any user with the same id along with its faction membership
+     */
     public static void add(User user) {
-        STORE.put(user.id, user);
+        User previous = store().put(user.id, user);
+        if (previous != null && previous != user) {
+            ServerPlayerEntity player = previous.player;
+            previous.setPlayer(null);
+            unindex(previous);
+            Faction faction = previous.getFaction();
+            if (faction != null) {
+                faction.adjustMemberPower(-previous.power, -previous.getMaxPower());
+            }
+            user.setPlayer(player);
+        }
+
+        index(user);
+        Faction faction = user.getFaction();
+        if (faction != null) {
+            faction.adjustMemberPower(user.power, user.getMaxPower());
+        }
+        user.markDirty();
+    }
+
+    /**
+     * Drops a user from memory when nothing about it differs from a new user, for example when
+     * the player disconnects
+     */
+    public static void evict(User user) {
+        if (user.isEvictable()) {
+            store().remove(user.id, user);
+        }
+    }
+
+    private boolean isEvictable() {
+        return player == null && spoof == null && !autoclaim && !bypass && hasDefaultState();
+    }
+
+    /**
+     * Whether every saved field still has the value of a new user. Such users are not written to
+     * disk.
+     */
+    public boolean hasDefaultState() {
+        return factionID == null && rank == null
+                && radar == FactionsMod.CONFIG.DISPLAY.RADAR_DEFAULT && chat == ChatMode.GLOBAL
+                && sounds == SoundMode.ALL && homeCooldown == -1
+                && power == FactionsMod.CONFIG.POWER.PLAYER_START;
+    }
+
+    /**
+     * Queues this user for the next journal write, or for removal from disk once it is back to
+     * its default state
+     */
+    public void markDirty() {
+        if (hasDefaultState()) {
+            Database.markRemoved(User.class, this);
+        } else {
+            store().putIfAbsent(id, this);
+            Database.markDirty(User.class, this);
+        }
     }
 
     public UUID getID() {
@@ -133,37 +255,92 @@ public class User {
         this.spoof = user;
     }
 
+    /**
+     * @return The player entity of this user while they are online
+     */
+    @Nullable
+    public ServerPlayerEntity getPlayer() {
+        return player;
+    }
+
+    /**
+     * Updates the online state of this user and the online roster of their faction. Called when
+     * the player joins, respawns (which replaces the entity) or disconnects.
+     */
+    public void setPlayer(@Nullable ServerPlayerEntity player) {
+        this.player = player;
+
+        Faction faction = getFaction();
+        if (faction != null) {
+            if (player == null) {
+                faction.removeOnlineMember(id);
+            } else {
+                faction.addOnlineMember(player);
+            }
+        }
+    }
+
     public void joinFaction(UUID factionID, Rank rank) {
+        Faction oldFaction = getFaction();
+        unindex(this);
         this.factionID = factionID;
         this.rank = rank;
-        FactionEvents.MEMBER_JOIN.invoker().onMemberJoin(Faction.get(factionID), this);
+        index(this);
+        markDirty();
+
+        if (oldFaction != null) {
+            oldFaction.adjustMemberPower(-power, -getMaxPower());
+            oldFaction.removeOnlineMember(id);
+        }
+        Faction faction = Faction.get(factionID);
+        if (faction != null) {
+            faction.adjustMemberPower(power, getMaxPower());
+            if (player != null) {
+                faction.addOnlineMember(player);
+            }
+        }
+
+        FactionEvents.MEMBER_JOIN.invoker().onMemberJoin(faction, this);
     }
 
     public void leaveFaction() {
-        UUID oldFactionID = factionID;
+        Faction oldFaction = getFaction();
+        unindex(this);
         factionID = null;
         rank = null;
-        FactionEvents.MEMBER_LEAVE.invoker().onMemberLeave(Faction.get(oldFactionID), this);
+        markDirty();
+
+        if (oldFaction != null) {
+            oldFaction.adjustMemberPower(-power, -getMaxPower());
+            oldFaction.removeOnlineMember(id);
+        }
+
+        FactionEvents.MEMBER_LEAVE.invoker().onMemberLeave(oldFaction, this);
     }
 
     public static Collection<User> all() {
-        return STORE.values();
+        return store().values();
     }
 
     public static void audit() {
-        STORE.values().forEach((user) -> {
-            if (Faction.get(user.factionID) == null) {
+        store().values().forEach((user) -> {
+            if (user.factionID != null && Faction.get(user.factionID) == null) {
+                unindex(user);
                 user.factionID = null;
+                user.markDirty();
             }
 
-            if (!user.isInFaction()) {
+            if (!user.isInFaction() && user.rank != null) {
                 user.rank = null;
+                user.markDirty();
             }
         });
     }
 
     public static void save() {
-        Database.save(User.class, STORE.values().stream().toList());
+        store().values().removeIf(User::isEvictable);
+        Database.save(User.class,
+                store().values().stream().filter(user -> !user.hasDefaultState()).toList());
     }
 
     public int getPower() {
@@ -190,8 +367,10 @@ public class User {
         }
 
         power = newPower;
+        markDirty();
 
         if (faction != null && oldFactionPower != null) {
+            faction.adjustMemberPower(newPower - oldPower, 0);
             faction.notifyPowerChange(oldFactionPower);
         }
 
@@ -210,9 +389,12 @@ public class User {
             oldFactionPower = faction.getPower();
         }
 
+        int oldPower = this.power;
         this.power = bounded;
+        markDirty();
 
         if (faction != null && oldFactionPower != null) {
+            faction.adjustMemberPower(bounded - oldPower, 0);
             faction.notifyPowerChange(oldFactionPower);
         }
     }
@@ -0,0 +1,45 @@
+package io.icker.factions.api.protection;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import io.icker.factions.api.persistents.Relationship.Permissions;
+import io.icker.factions.core.InteractionManager;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Claim protection checks for other mods. Area tools such as vein miners, tree fellers and
+ * building wands should check all the blocks of an action in one call, which resolves each chunk
+ * once rather than once per block.
+ */
+public final class ClaimProtection {
+    private ClaimProtection() {}
+
+    /**
+     * Checks whether a player may act on a single block
+     */
+    public static boolean isAllowed(ServerPlayerEntity player, World world, Permissions permission,
+            BlockPos pos) {
+        return getAllowed(player, world, permission, List.of(pos)).get(0);
+    }
+
+    /**
+     * Checks whether a player may act on each of many blocks in a world
+     *
+     * @return The indices, in the iteration order of {@code positions}, of the allowed blocks
+     */
+    public static BitSet getAllowed(ServerPlayerEntity player, World world, Permissions permission,
+            Collection<BlockPos> positions) {
+        return InteractionManager.checkPermissions(player, world, permission, positions);
+    }
+
+    /**
+     * Checks whether a player may act on every one of many blocks in a world
+     */
+    public static boolean isAllowedAll(ServerPlayerEntity player, World world,
+            Permissions permission, Collection<BlockPos> positions) {
+        return getAllowed(player, world, permission, positions).cardinality() == positions.size();
+    }
+}
@@ -11,14 +11,21 @@ import io.icker.factions.FactionsMod;
 import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
+import io.icker.factions.config.Config;
+import io.icker.factions.core.ServerManager;
+import io.icker.factions.core.Session;
+import io.icker.factions.core.TransferManager;
+import io.icker.factions.database.Backup;
 import io.icker.factions.util.Command;
 import io.icker.factions.util.Message;
 
+import net.minecraft.command.CommandSource;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Formatting;
 
+import java.io.IOException;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -44,6 +51,29 @@ public class AdminCommand implements Command {
         return 1;
     }
 
+    private int reloadConfig(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+
+        try {
+            FactionsMod.CONFIG = Config.read();
+        } catch (IOException | RuntimeException e) {
+            FactionsMod.LOGGER.error("Failed to reload the factions config", e);
+            source.sendError(new Message("Could not read the config, keeping the current one")
+                    .raw());
+            return 0;
+        }
+
+        // Drop everything compiled from the previous config
+        Faction.invalidatePermissions();
+        Faction.invalidatePowerTotals();
+        Session.invalidateAll();
+
+        source.sendFeedback(() -> new Message(
+                "Reloaded the config, command and database settings apply after a restart").raw(),
+                true);
+        return 1;
+    }
+
     private int power(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
 
@@ -114,6 +144,7 @@ public class AdminCommand implements Command {
             Faction.audit();
             User.audit();
         }
+        Session.invalidateAll();
 
         ServerCommandSource source = context.getSource();
         ServerPlayerEntity player = source.getPlayerOrThrow();
@@ -125,6 +156,66 @@ public class AdminCommand implements Command {
         return 1;
     }
 
+    private int backup(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+
+        ServerManager.backup().whenCompleteAsync((archive, error) -> {
+            if (error == null) {
+                source.sendFeedback(
+                        () -> new Message("Backed up factions data to %s", archive.getName()).raw(),
+                        true);
+            } else {
+                source.sendError(new Message("Backup failed, see the server log").raw());
+            }
+        }, source.getServer());
+
+        return 1;
+    }
+
+    private int restore(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        String name = StringArgumentType.getString(context, "backup");
+
+        try {
+            if (!Backup.scheduleRestore(name)) {
+                source.sendError(new Message("No backup named %s", name).raw());
+                return 0;
+            }
+        } catch (IOException e) {
+            FactionsMod.LOGGER.error("Failed to request restore of {}", name, e);
+            source.sendError(new Message("Restore request failed, see the server log").raw());
+            return 0;
+        }
+
+        source.sendFeedback(
+                () -> new Message("Backup %s will be restored on the next server start", name)
+                        .raw(),
+                true);
+        return 1;
+    }
+
+    private int export(CommandContext<ServerCommandSource> context, TransferManager.Format format) {
+        TransferManager.export(context.getSource(), format);
+        return 1;
+    }
+
+    private int importFile(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        String name = StringArgumentType.getString(context, "file");
+
+        if (TransferManager.isImporting()) {
+            source.sendError(new Message("An import is already running").raw());
+            return 0;
+        }
+        if (!TransferManager.start(source, name)) {
+            source.sendError(new Message("No file named %s in factions/imports", name).raw());
+            return 0;
+        }
+
+        source.sendFeedback(() -> new Message("Importing %s", name).raw(), true);
+        return 1;
+    }
+
     public LiteralCommandNode<ServerCommandSource> getNode() {
         return CommandManager.literal("admin")
                 .then(CommandManager.literal("bypass")
@@ -137,6 +228,10 @@ public class AdminCommand implements Command {
                                         FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL),
                                 source -> FactionsMod.dynmap != null))
                         .executes(this::reload))
+                .then(CommandManager.literal("config")
+                        .requires(Requires.hasPerms("factions.admin.config",
+                                FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL))
+                        .then(CommandManager.literal("reload").executes(this::reloadConfig)))
                 .then(CommandManager.literal("power")
                         .requires(
                                 Requires.hasPerms("factions.admin.power",
@@ -155,6 +250,30 @@ public class AdminCommand implements Command {
                         .requires(Requires.hasPerms("factions.admin.audit",
                                 FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL))
                         .executes(this::audit))
+                .then(CommandManager.literal("backup")
+                        .requires(Requires.hasPerms("factions.admin.backup",
+                                FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL))
+                        .executes(this::backup)
+                        .then(CommandManager.literal("restore").then(CommandManager
+                                .argument("backup", StringArgumentType.string())
+                                .suggests((context, builder) -> CommandSource
+                                        .suggestMatching(Backup.list(), builder))
+                                .executes(this::restore))))
+                .then(CommandManager.literal("export")
+                        .requires(Requires.hasPerms("factions.admin.export",
+                                FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL))
+                        .executes(context -> export(context, TransferManager.Format.SNBT))
+                        .then(CommandManager.literal("snbt").executes(
+                                context -> export(context, TransferManager.Format.SNBT)))
+                        .then(CommandManager.literal("nbt").executes(
+                                context -> export(context, TransferManager.Format.NBT))))
+                .then(CommandManager.literal("import")
+                        .requires(Requires.hasPerms("factions.admin.import",
+                                FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL))
+                        .then(CommandManager.argument("file", StringArgumentType.string())
+                                .suggests((context, builder) -> CommandSource
+                                        .suggestMatching(TransferManager.listImports(), builder))
+                                .executes(this::importFile)))
                 .build();
     }
 }
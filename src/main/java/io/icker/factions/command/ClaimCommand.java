@@ -20,6 +20,7 @@ import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
 import io.icker.factions.util.Command;
+import io.icker.factions.util.DimensionHandle;
 import io.icker.factions.util.Message;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
@@ -154,8 +155,8 @@ public class ClaimCommand implements Command {
             return 0;
         }
 
-        String dimension = player.getWorld().getRegistryKey().getValue().toString();
-        ChunkPos origin = player.getWorld().getChunk(player.getBlockPos()).getPos();
+        String dimension = DimensionHandle.of(player.getWorld()).getId();
+        ChunkPos origin = player.getChunkPos();
 
         ClaimPlan plan = computeClaim(player, faction, origin, dimension, size);
         if (plan == null) {
@@ -217,6 +218,7 @@ public class ClaimCommand implements Command {
             return null;
         }
 
+        DimensionHandle handle = DimensionHandle.of(dimension);
         ArrayList<ChunkPos> chunks = new ArrayList<>();
         HashMap<UUID, Integer> warClaimsTaken = new HashMap<>();
         HashSet<Claim> claimsToRemove = new HashSet<>();
@@ -226,7 +228,7 @@ public class ClaimCommand implements Command {
         for (int x = -size + 1; x < size; x++) {
             for (int z = -size + 1; z < size; z++) {
                 ChunkPos chunkPos = new ChunkPos(origin.x + x, origin.z + z);
-                Claim existingClaim = Claim.get(chunkPos.x, chunkPos.z, dimension);
+                Claim existingClaim = Claim.get(chunkPos.toLong(), handle);
 
                 if (existingClaim != null) {
                     Faction owner = existingClaim.getFaction();
@@ -276,8 +278,7 @@ public class ClaimCommand implements Command {
             return null;
         }
 
-        List<Claim> existingLevelClaims = faction.getClaims().stream()
-                .filter(claim -> claim.level.equals(dimension)).toList();
+        List<Claim> existingLevelClaims = faction.getClaims(dimension);
 
         boolean requiresConnection = hasWilderness;
 
@@ -307,8 +308,9 @@ public class ClaimCommand implements Command {
 
     private int applyClaimPlan(ServerPlayerEntity player, Faction faction, String dimension, int size,
             ClaimPlan plan) {
+        DimensionHandle handle = DimensionHandle.of(dimension);
         for (ChunkPos chunk : plan.chunks) {
-            Claim existing = Claim.get(chunk.x, chunk.z, dimension);
+            Claim existing = Claim.get(chunk.toLong(), handle);
             if (existing != null && existing.getFaction() != null
                     && existing.getFaction().getID() != faction.getID()
                     && plan.claimsToRemove.contains(existing)) {
@@ -392,8 +394,8 @@ public class ClaimCommand implements Command {
             return 0;
         }
 
-        String dimension = player.getWorld().getRegistryKey().getValue().toString();
-        ChunkPos origin = player.getWorld().getChunk(player.getBlockPos()).getPos();
+        String dimension = DimensionHandle.of(player.getWorld()).getId();
+        ChunkPos origin = player.getChunkPos();
 
         List<Claim> claims = collectRemovableClaims(player, faction, user, origin, dimension, size);
         if (claims == null || claims.isEmpty()) {
@@ -450,10 +452,11 @@ public class ClaimCommand implements Command {
 
     private List<Claim> collectRemovableClaims(ServerPlayerEntity player, Faction faction, User user,
             ChunkPos origin, String dimension, int size) {
+        DimensionHandle handle = DimensionHandle.of(dimension);
         ArrayList<Claim> claims = new ArrayList<>();
 
         if (size == 1) {
-            Claim existingClaim = Claim.get(origin.x, origin.z, dimension);
+            Claim existingClaim = Claim.get(origin.toLong(), handle);
             if (existingClaim == null) {
                 new Message("Cannot remove a claim on an unclaimed chunk").fail().send(player, false);
                 return null;
@@ -472,8 +475,7 @@ public class ClaimCommand implements Command {
 
         for (int x = -size + 1; x < size; x++) {
             for (int z = -size + 1; z < size; z++) {
-                ChunkPos chunkPos = new ChunkPos(origin.x + x, origin.z + z);
-                Claim existingClaim = Claim.get(chunkPos.x, chunkPos.z, dimension);
+                Claim existingClaim = Claim.get(ChunkPos.toLong(origin.x + x, origin.z + z), handle);
 
                 if (existingClaim == null) {
                     continue;
@@ -615,9 +617,10 @@ public class ClaimCommand implements Command {
     }
 
     private boolean touchesOtherFactionTerritory(Faction faction, ChunkPos chunk, String dimension) {
+        DimensionHandle handle = DimensionHandle.of(dimension);
         int[][] directions = new int[][] { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
         for (int[] dir : directions) {
-            Claim neighbor = Claim.get(chunk.x + dir[0], chunk.z + dir[1], dimension);
+            Claim neighbor = Claim.get(ChunkPos.toLong(chunk.x + dir[0], chunk.z + dir[1]), handle);
             if (neighbor == null)
                 continue;
 
@@ -686,10 +689,7 @@ public class ClaimCommand implements Command {
         ServerPlayerEntity player = source.getPlayerOrThrow();
         ServerWorld world = (ServerWorld) player.getWorld();
 
-        ChunkPos chunkPos = world.getChunk(player.getBlockPos()).getPos();
-        String dimension = world.getRegistryKey().getValue().toString();
-
-        Claim claim = Claim.get(chunkPos.x, chunkPos.z, dimension);
+        Claim claim = Claim.getAt(player.getBlockPos(), DimensionHandle.of(world));
 
         if (claim == null) {
             new Message("Cannot change access level on unclaimed chunk").fail().send(player, false);
@@ -747,6 +747,8 @@ public class ClaimCommand implements Command {
             }
         }
 
+        claim.markDirty();
+
         new Message("Claim (%d, %d) changed to level %s by %s", claim.x, claim.z,
                 claim.accessLevel.toString(), player.getName().getString()).send(faction);
         return 1;
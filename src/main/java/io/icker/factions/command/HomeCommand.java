@@ -10,6 +10,7 @@ import io.icker.factions.api.persistents.Home;
 import io.icker.factions.api.persistents.User;
 import io.icker.factions.mixin.DamageTrackerAccessor;
 import io.icker.factions.util.Command;
+import io.icker.factions.util.DimensionHandle;
 import io.icker.factions.util.Message;
 import io.icker.factions.util.WorldUtils;
 import net.minecraft.server.command.CommandManager;
@@ -17,7 +18,6 @@ import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.ChunkPos;
 
 import java.time.Instant;
 import java.util.Date;
@@ -78,6 +78,7 @@ public class HomeCommand implements Command {
                         .getAgeOnLastDamage() > FactionsMod.CONFIG.HOME.DAMAGE_COOLDOWN) {
             player.teleport(world, home.x, home.y, home.z, home.yaw, home.pitch);
             user.homeCooldown = Date.from(Instant.now()).getTime();
+            user.markDirty();
 
             new Message("Warped to faction home").send(player, false);
         } else {
@@ -99,7 +100,7 @@ public class HomeCommand implements Command {
 
         Home home = new Home(faction.getID(), player.getX(), player.getY(), player.getZ(),
                 player.getHeadYaw(), player.getPitch(),
-                player.getWorld().getRegistryKey().getValue().toString());
+                DimensionHandle.of(player.getWorld()).getId());
 
         faction.setHome(home);
         new Message("Home set to %.2f, %.2f, %.2f by %s", home.x, home.y, home.z,
@@ -111,10 +112,7 @@ public class HomeCommand implements Command {
         if (!FactionsMod.CONFIG.HOME.CLAIM_ONLY)
             return false;
 
-        ChunkPos chunkPos = world.getChunk(pos).getPos();
-        String dimension = world.getRegistryKey().getValue().toString();
-
-        Claim possibleClaim = Claim.get(chunkPos.x, chunkPos.z, dimension);
+        Claim possibleClaim = Claim.getAt(pos, DimensionHandle.of(world));
         return possibleClaim == null || possibleClaim.getFaction().getID() != faction.getID();
     }
 
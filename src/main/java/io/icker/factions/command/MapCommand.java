@@ -6,6 +6,7 @@ import com.mojang.brigadier.tree.LiteralCommandNode;
 import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.util.Command;
+import io.icker.factions.util.DimensionHandle;
 import io.icker.factions.util.Message;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
@@ -21,8 +22,8 @@ public class MapCommand implements Command {
         ServerPlayerEntity player = source.getPlayerOrThrow();
         ServerWorld world = (ServerWorld) player.getWorld();
 
-        ChunkPos chunkPos = world.getChunk(player.getBlockPos()).getPos();
-        String dimension = world.getRegistryKey().getValue().toString();
+        ChunkPos chunkPos = player.getChunkPos();
+        DimensionHandle dimension = DimensionHandle.of(world);
 
         // Print the header of the faction map.
         new Message(Formatting.DARK_GRAY + "──┤" + Formatting.GREEN + " Faction Map"
@@ -31,7 +32,7 @@ public class MapCommand implements Command {
         for (int z = -4; z <= 4; z++) { // Rows (9)
             Message row = new Message("");
             for (int x = -5; x <= 5; x++) { // Columns (11)
-                Claim claim = Claim.get(chunkPos.x + x, chunkPos.z + z, dimension);
+                Claim claim = Claim.get(ChunkPos.toLong(chunkPos.x + x, chunkPos.z + z), dimension);
                 if (x == 0 && z == 0) { // Check if middle (your chunk)
                     if (claim == null) {
                         row.add(new Message("⏺").format(Formatting.DARK_GRAY)
@@ -113,6 +113,8 @@ public class PermissionCommand implements Command {
         } else {
             faction.guest_permissions.remove(permission);
         }
+        faction.markDirty();
+        Faction.invalidatePermissions();
 
         new Message("Successfully changed permissions").send(player, false);
         return 1;
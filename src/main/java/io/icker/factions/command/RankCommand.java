@@ -47,6 +47,7 @@ public class RankCommand implements Command {
                         return 0;
                     }
                 }
+                users.markDirty();
 
                 context.getSource().getServer().getPlayerManager().sendCommandTree(target);
 
@@ -101,6 +102,7 @@ public class RankCommand implements Command {
                         return 0;
                     }
                 }
+                user.markDirty();
 
                 context.getSource().getServer().getPlayerManager().sendCommandTree(target);
 
@@ -134,7 +136,9 @@ public class RankCommand implements Command {
         UUID targetFaction = targetUser.isInFaction() ? targetUser.getFaction().getID() : null;
         if (Command.getUser(player).getFaction().getID().equals(targetFaction)) {
             targetUser.rank = User.Rank.OWNER;
+            targetUser.markDirty();
             Command.getUser(player).rank = User.Rank.LEADER;
+            Command.getUser(player).markDirty();
 
             context.getSource().getServer().getPlayerManager().sendCommandTree(player);
             context.getSource().getServer().getPlayerManager().sendCommandTree(target);
@@ -17,6 +17,7 @@ public class SettingsCommand implements Command {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
         User user = User.get(player.getUuid());
         user.chat = option;
+        user.markDirty();
 
         new Message("Successfully set your chat preference").filler("·")
                 .add(new Message(user.getChatName()).format(Formatting.BLUE)).send(player, false);
@@ -28,6 +29,7 @@ public class SettingsCommand implements Command {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
         User user = User.get(player.getUuid());
         user.sounds = option;
+        user.markDirty();
 
         new Message("Successfully set your sound preference").filler("·")
                 .add(new Message(user.getSoundName()).format(Formatting.BLUE)).send(player, false);
@@ -42,6 +44,7 @@ public class SettingsCommand implements Command {
         User config = User.get(player.getUuid());
         boolean radar = !config.radar;
         config.radar = radar;
+        config.markDirty();
 
         new Message("Successfully toggled claim radar").filler("·").add(
                 new Message(radar ? "ON" : "OFF").format(radar ? Formatting.GREEN : Formatting.RED))
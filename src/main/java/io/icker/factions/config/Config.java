@@ -3,6 +3,7 @@ package io.icker.factions.config;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.List;
 import org.jetbrains.annotations.Nullable;
@@ -24,6 +25,19 @@ public class Config {
             .resolve("factions.json").toFile();
 
     public static Config load() {
+        try {
+            return read();
+        } catch (Exception e) {
+            FactionsMod.LOGGER.error("An error occurred reading the factions config file", e);
+            return new Config();
+        }
+    }
+
+    /**
+     * Reads the config file, creating it with the defaults when missing and adding any missing
+     * sections
+     */
+    public static Config read() throws IOException {
         Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().serializeNulls()
                 .registerTypeAdapter(HomeConfig.class, new Deserializer<>(HomeConfig.class))
                 .registerTypeAdapter(PowerConfig.class, new Deserializer<>(PowerConfig.class))
@@ -31,57 +45,55 @@ public class Config {
                 .registerTypeAdapter(WildernessConfig.class, new Deserializer<>(WildernessConfig.class))
                 .create();
 
-        try {
-            if (!file.exists()) {
-                file.getParentFile().mkdir();
+        if (!file.exists()) {
+            file.getParentFile().mkdir();
 
-                Config defaults = new Config();
+            Config defaults = new Config();
 
-                FileWriter writer = new FileWriter(file);
-                gson.toJson(defaults, writer);
-                writer.close();
+            FileWriter writer = new FileWriter(file);
+            gson.toJson(defaults, writer);
+            writer.close();
 
-                return defaults;
-            }
+            return defaults;
+        }
 
-            Config config = gson.fromJson(new FileReader(file), Config.class);
-            Config defaults = new Config();
+        Config config = gson.fromJson(new FileReader(file), Config.class);
+        Config defaults = new Config();
 
-            if (config.RELATIONSHIPS == null) {
-                config.RELATIONSHIPS = defaults.RELATIONSHIPS;
-            } else {
-                if (config.RELATIONSHIPS.COMPAT_SKILL_DAMAGE_PROTECTION_FOR == null) {
-                    config.RELATIONSHIPS.COMPAT_SKILL_DAMAGE_PROTECTION_FOR = defaults.RELATIONSHIPS.COMPAT_SKILL_DAMAGE_PROTECTION_FOR;
-                }
+        if (config.RELATIONSHIPS == null) {
+            config.RELATIONSHIPS = defaults.RELATIONSHIPS;
+        } else {
+            if (config.RELATIONSHIPS.COMPAT_SKILL_DAMAGE_PROTECTION_FOR == null) {
+                config.RELATIONSHIPS.COMPAT_SKILL_DAMAGE_PROTECTION_FOR = defaults.RELATIONSHIPS.COMPAT_SKILL_DAMAGE_PROTECTION_FOR;
             }
+        }
 
-            if (config.DISPLAY == null) {
-                config.DISPLAY = defaults.DISPLAY;
-            }
+        if (config.DISPLAY == null) {
+            config.DISPLAY = defaults.DISPLAY;
+        }
 
-            if (config.WILDERNESS == null) {
-                config.WILDERNESS = defaults.WILDERNESS;
-            }
+        if (config.WILDERNESS == null) {
+            config.WILDERNESS = defaults.WILDERNESS;
+        }
 
-            if (config.CLAIM == null) {
-                config.CLAIM = defaults.CLAIM;
-            }
+        if (config.CLAIM == null) {
+            config.CLAIM = defaults.CLAIM;
+        }
 
-            if (config.VERSION != REQUIRED_VERSION) {
-                FactionsMod.LOGGER.error(String.format(
-                        "Config file incompatible (requires version %d)", REQUIRED_VERSION));
-            }
+        if (config.DATABASE == null) {
+            config.DATABASE = defaults.DATABASE;
+        }
 
-            FileWriter writer = new FileWriter(file);
-            gson.toJson(config, writer);
-            writer.close();
+        if (config.VERSION != REQUIRED_VERSION) {
+            FactionsMod.LOGGER.error(String.format(
+                    "Config file incompatible (requires version %d)", REQUIRED_VERSION));
+        }
 
-            return config;
+        FileWriter writer = new FileWriter(file);
+        gson.toJson(config, writer);
+        writer.close();
 
-        } catch (Exception e) {
-            FactionsMod.LOGGER.error("An error occurred reading the factions config file", e);
-            return new Config();
-        }
+        return config;
     }
 
     public static void save(Config config) {
@@ -135,6 +147,9 @@ public class Config {
     @SerializedName("claim")
     public ClaimConfig CLAIM = new ClaimConfig();
 
+    @SerializedName("database")
+    public DatabaseConfig DATABASE = new DatabaseConfig();
+
     @SerializedName("maxFactionSize")
     public int MAX_FACTION_SIZE = -1;
 
@@ -219,4 +234,18 @@ public class Config {
         @SerializedName("requireFirstClaimConfirmation")
         public boolean REQUIRE_FIRST_CLAIM_CONFIRMATION = true;
     }
+
+    public static class DatabaseConfig {
+        @SerializedName("backend")
+        public String BACKEND = "nbt";
+
+        @SerializedName("journalIntervalTicks")
+        public int JOURNAL_INTERVAL_TICKS = 600;
+
+        @SerializedName("backupIntervalMinutes")
+        public int BACKUP_INTERVAL_MINUTES = 0;
+
+        @SerializedName("backupsKept")
+        public int BACKUPS_KEPT = 10;
+    }
 }
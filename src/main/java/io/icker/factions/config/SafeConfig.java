@@ -8,4 +8,7 @@ public class SafeConfig {
 
     @SerializedName("double")
     public boolean DOUBLE = true;
+
+    @SerializedName("unloadAfterSeconds")
+    public int UNLOAD_AFTER_SECONDS = 300;
 }
@@ -25,4 +25,17 @@ public class WildernessConfig {
 
     @SerializedName("allowLavaPlacement")
     public boolean ALLOW_LAVA_PLACEMENT = false;
+
+    private transient WildernessRules rules;
+
+    /**
+     * @return The blacklists compiled against the registries, on first use as mods register their
+     *         content during startup
+     */
+    public WildernessRules getRules() {
+        if (rules == null) {
+            rules = new WildernessRules(this);
+        }
+        return rules;
+    }
 }
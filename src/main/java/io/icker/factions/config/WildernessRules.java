@@ -0,0 +1,83 @@
+package io.icker.factions.config;
+
+import java.util.List;
+import java.util.Set;
+import io.icker.factions.FactionsMod;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.fluid.Fluids;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.Registry;
+import net.minecraft.util.Identifier;
+
+/**
+ * The blacklists of a {@link WildernessConfig} resolved to the registered blocks and fluids they
+ * name, mods included, so a check is a single identity set lookup
+ */
+public class WildernessRules {
+    private final ReferenceOpenHashSet<Object> breakBlacklist = new ReferenceOpenHashSet<>();
+    private final ReferenceOpenHashSet<Object> placeBlacklist = new ReferenceOpenHashSet<>();
+
+    WildernessRules(WildernessConfig config) {
+        addEntries(breakBlacklist, config.BREAK_BLACKLIST);
+
+        addEntries(placeBlacklist, config.PLACE_BLACKLIST);
+        // The bucket settings take precedence over the place blacklist
+        setBlocked(placeBlacklist, Fluids.WATER, !config.ALLOW_WATER_PLACEMENT);
+        setBlocked(placeBlacklist, Fluids.LAVA, !config.ALLOW_LAVA_PLACEMENT);
+
+        // And a blacklisted mod over both
+        Set<String> breakMods = Set.copyOf(config.BREAK_MOD_BLACKLIST);
+        Set<String> placeMods = Set.copyOf(config.PLACE_MOD_BLACKLIST);
+        addMods(breakBlacklist, breakMods, Registries.BLOCK);
+        addMods(breakBlacklist, breakMods, Registries.FLUID);
+        addMods(placeBlacklist, placeMods, Registries.BLOCK);
+        addMods(placeBlacklist, placeMods, Registries.FLUID);
+    }
+
+    /**
+     * @param target The block or fluid broken or picked up
+     */
+    public boolean canBreak(Object target) {
+        return !breakBlacklist.contains(target);
+    }
+
+    /**
+     * @param target The block or fluid placed
+     */
+    public boolean canPlace(Object target) {
+        return !placeBlacklist.contains(target);
+    }
+
+    private static void addEntries(Set<Object> blacklist, List<String> entries) {
+        for (String entry : entries) {
+            Identifier id = Identifier.tryParse(entry);
+            if (id == null) {
+                FactionsMod.LOGGER.error("Invalid wilderness blacklist entry {}", entry);
+                continue;
+            }
+
+            Registries.BLOCK.getOrEmpty(id).ifPresent(blacklist::add);
+            Registries.FLUID.getOrEmpty(id).ifPresent(blacklist::add);
+        }
+    }
+
+    private static void setBlocked(Set<Object> blacklist, Object target, boolean blocked) {
+        if (blocked) {
+            blacklist.add(target);
+        } else {
+            blacklist.remove(target);
+        }
+    }
+
+    private static void addMods(Set<Object> blacklist, Set<String> mods, Registry<?> registry) {
+        if (mods.isEmpty()) {
+            return;
+        }
+
+        for (Identifier id : registry.getIds()) {
+            if (mods.contains(id.getNamespace())) {
+                blacklist.add(registry.get(id));
+            }
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package io.icker.factions.core;
 
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 import io.icker.factions.FactionsMod;
@@ -23,18 +22,18 @@ public class ChatManager {
     }
 
     public static Text handleMessage(ServerPlayerEntity sender, String message) {
-        UUID id = sender.getUuid();
-        User member = User.get(id);
+        Session session = Session.get(sender);
+        User member = session.getUser();
 
         if (member.chat == User.ChatMode.GLOBAL) {
             if (member.isInFaction()) {
-                return ChatManager.inFactionGlobal(sender, member.getFaction(), message);
+                return ChatManager.inFactionGlobal(sender, session.getFaction(), message);
             } else {
                 return ChatManager.global(sender, message);
             }
         } else {
             if (member.isInFaction()) {
-                return ChatManager.faction(sender, member.getFaction(), message);
+                return ChatManager.faction(sender, session.getFaction(), message);
             } else {
                 return ChatManager.global(sender, message);
             }
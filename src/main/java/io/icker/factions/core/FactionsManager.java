@@ -7,11 +7,11 @@ import io.icker.factions.FactionsMod;
 import io.icker.factions.api.events.ClaimEvents;
 import io.icker.factions.api.events.FactionEvents;
 import io.icker.factions.api.events.PlayerEvents;
+import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.Home;
 import io.icker.factions.api.persistents.User;
 import io.icker.factions.util.Message;
-import io.icker.factions.util.WorldUtils;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.entity.damage.DamageSource;
 import net.minecraft.entity.Entity;
@@ -22,7 +22,6 @@ import net.minecraft.screen.SimpleNamedScreenHandlerFactory;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.PlayerManager;
 import net.minecraft.server.network.ServerPlayerEntity;
-import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
 import net.minecraft.util.ActionResult;
 import net.minecraft.util.math.BlockPos;
@@ -51,11 +50,7 @@ public class FactionsManager {
 
                 BlockPos homePos = BlockPos.ofFloored(home.x, home.y, home.z);
 
-                ServerWorld world = WorldUtils.getWorld(home.level);
-
-                ChunkPos homeChunkPos = world.getChunk(homePos).getPos();
-
-                if (homeChunkPos.x == x && homeChunkPos.z == z) {
+                if (Claim.getPackedChunk(homePos) == ChunkPos.toLong(x, z)) {
                     faction.setHome(null);
                 }
             });
@@ -68,10 +63,7 @@ public class FactionsManager {
     }
 
     private static void factionModified(Faction faction) {
-        ServerPlayerEntity[] players =
-                faction.getUsers().stream().map(user -> playerManager.getPlayer(user.getID()))
-                        .filter(player -> player != null).toArray(ServerPlayerEntity[]::new);
-        updatePlayerList(players);
+        updatePlayerList(faction.getOnlineMembers().toArray(ServerPlayerEntity[]::new));
     }
 
     private static void memberChange(Faction faction, User user) {
@@ -1,21 +1,28 @@
 package io.icker.factions.core;
 
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
 import io.icker.factions.FactionsMod;
 import io.icker.factions.api.events.PlayerEvents;
 import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.Relationship.Permissions;
 import io.icker.factions.api.persistents.User;
+import io.icker.factions.config.WildernessConfig;
 import io.icker.factions.core.InteractionsUtil.InteractionsUtilActions;
 import io.icker.factions.mixin.BucketItemAccessor;
 import io.icker.factions.mixin.ItemInvoker;
+import io.icker.factions.util.DimensionHandle;
 
 import org.jetbrains.annotations.Nullable;
 
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
 import net.fabricmc.fabric.api.event.player.AttackEntityCallback;
 import net.fabricmc.fabric.api.event.player.PlayerBlockBreakEvents;
 import net.fabricmc.fabric.api.event.player.UseBlockCallback;
 import net.fabricmc.fabric.api.event.player.UseItemCallback;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.Entity;
@@ -27,26 +34,29 @@ import net.minecraft.item.BucketItem;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.ItemUsageContext;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.ActionResult;
 import net.minecraft.util.Hand;
 import net.minecraft.util.TypedActionResult;
 import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.hit.EntityHitResult;
-import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.ChunkPos;
-//import net.minecraft.world.BlockView;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.world.RaycastContext;
 import net.minecraft.world.RaycastContext.FluidHandling;
-//import net.minecraft.world.explosion.Explosion;
+import net.minecraft.world.explosion.Explosion;
 import net.minecraft.world.World;
-import net.minecraft.registry.Registries;
 
 public class InteractionManager {
+    private static final byte UNRESOLVED = 0;
+    private static final byte ALLOWED = 1;
+    private static final byte DENIED = 2;
+    private static final byte WILDERNESS = 3;
+
     public static void register() {
         PlayerBlockBreakEvents.BEFORE.register(InteractionManager::onBreakBlock);
-        // PlayerEvents.EXPLODE_BLOCK.register(InteractionManager::onExplodeBlock);
-        // PlayerEvents.EXPLODE_DAMAGE.register(InteractionManager::onExplodeDamage);
+        PlayerEvents.EXPLODE_BLOCKS.register(InteractionManager::onExplodeBlocks);
+        PlayerEvents.EXPLODE_DAMAGE.register(InteractionManager::onExplodeDamage);
         UseBlockCallback.EVENT.register(InteractionManager::onUseBlock);
         UseItemCallback.EVENT.register(InteractionManager::onUseBucket);
         AttackEntityCallback.EVENT.register(InteractionManager::onAttackEntity);
@@ -58,84 +68,104 @@ public class InteractionManager {
 
     private static boolean onBreakBlock(World world, PlayerEntity player, BlockPos pos,
             BlockState state, BlockEntity blockEntity) {
-        Identifier blockId = Registries.BLOCK.getId(state.getBlock());
-        boolean result = checkPermissions(player, pos, world, Permissions.BREAK_BLOCKS, blockId)
-                == ActionResult.FAIL;
+        boolean result = checkPermissions(player, pos, world, Permissions.BREAK_BLOCKS,
+                state.getBlock()) == ActionResult.FAIL;
         if (result) {
             InteractionsUtil.warn(player, InteractionsUtilActions.BREAK_BLOCKS);
         }
         return !result;
     }
 
-    // private static ActionResult onExplodeBlock(Explosion explosion, BlockView world, BlockPos pos, BlockState state) {
-    //     Entity causingEntity = explosion.getCausingEntity();
-    //     World actualWorld = causingEntity != null ? causingEntity.getWorld() : null;
-        
-    //     if (explosion.getCausingEntity() != null && explosion.getCausingEntity() instanceof PlayerEntity) {
-    //         ActionResult result =
-    //                 checkPermissions((PlayerEntity) explosion.getCausingEntity(), pos, actualWorld, Permissions.BREAK_BLOCKS);
-    //         if (result == ActionResult.FAIL) {
-    //             InteractionsUtil.warn((PlayerEntity) explosion.getCausingEntity(), InteractionsUtilActions.BREAK_BLOCKS);
-    //         }
-    //         return result;
-    //     } else {
-    //         if (!FactionsMod.CONFIG.BLOCK_TNT) return ActionResult.PASS;
-
-    //         String dimension = actualWorld.getRegistryKey().getValue().toString();
-    //         ChunkPos chunkPosition = actualWorld.getChunk(pos).getPos();
-
-    //         Claim claim = Claim.get(chunkPosition.x, chunkPosition.z, dimension);
-    //         if (claim == null) return ActionResult.PASS;
-
-    //         Faction claimFaction = claim.getFaction();
-
-    //         if (claimFaction.getClaims().size() * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT
-    //                 > claimFaction.getPower()) {
-    //             return ActionResult.PASS;
-    //         }
-
-    //         if (claimFaction.guest_permissions.contains(Permissions.BREAK_BLOCKS)) {
-    //             return ActionResult.PASS;
-    //         }
-
-    //         return ActionResult.FAIL;
-    //     }
-    // }
-
-    // private static ActionResult onExplodeDamage(Explosion explosion, Entity entity) {
-    //     Entity causingEntity = explosion.getCausingEntity();
-    //     World actualWorld = causingEntity != null ? causingEntity.getWorld() : null;
-
-    //     if (explosion.getCausingEntity() != null && explosion.getCausingEntity() instanceof PlayerEntity) {
-    //         ActionResult result =
-    //                 checkPermissions((PlayerEntity) explosion.getCausingEntity(), entity.getBlockPos(), actualWorld, Permissions.ATTACK_ENTITIES);
-    //         if (result == ActionResult.FAIL) {
-    //             InteractionsUtil.warn((PlayerEntity) explosion.getCausingEntity(), InteractionsUtilActions.BREAK_BLOCKS);
-    //         }
-    //         return result;
-    //     } else {
-    //         if (!FactionsMod.CONFIG.BLOCK_TNT) return ActionResult.PASS;
-
-    //         String dimension = actualWorld.getRegistryKey().getValue().toString();
-    //         ChunkPos chunkPosition = actualWorld.getChunk(entity.getBlockPos()).getPos();
-
-    //         Claim claim = Claim.get(chunkPosition.x, chunkPosition.z, dimension);
-    //         if (claim == null) return ActionResult.PASS;
-
-    //         Faction claimFaction = claim.getFaction();
-
-    //         if (claimFaction.getClaims().size() * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT
-    //                 > claimFaction.getPower()) {
-    //             return ActionResult.PASS;
-    //         }
-
-    //         if (claimFaction.guest_permissions.contains(Permissions.ATTACK_ENTITIES)) {
-    //             return ActionResult.PASS;
-    //         }
-
-    //         return ActionResult.FAIL;
-    //     }
-    // }
+    /**
+     * Removes the blocks an explosion may not destroy. A player's explosions follow their
+     * permissions, others only spare claims when {@code blockTNT} is on. Claims are resolved once
+     * per chunk, so large chain explosions stay cheap.
+     */
+    private static void onExplodeBlocks(Explosion explosion, World world, List<BlockPos> blocks) {
+        BitSet allowed;
+        if (explosion.getCausingEntity() instanceof ServerPlayerEntity player
+                && !player.isDisconnected()) {
+            allowed = checkPermissions(player, world, Permissions.BREAK_BLOCKS, blocks);
+            if (allowed.cardinality() < blocks.size()) {
+                InteractionsUtil.warn(player, InteractionsUtilActions.BREAK_BLOCKS);
+            }
+        } else if (FactionsMod.CONFIG.BLOCK_TNT) {
+            allowed = getExposedToExplosion(DimensionHandle.of(world), blocks);
+        } else {
+            return;
+        }
+
+        removeDenied(blocks, allowed);
+    }
+
+    /**
+     * Compacts a block list in place, keeping the order of the allowed blocks
+     */
+    static void removeDenied(List<BlockPos> blocks, BitSet allowed) {
+        int kept = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            if (allowed.get(i)) {
+                blocks.set(kept++, blocks.get(i));
+            }
+        }
+        blocks.subList(kept, blocks.size()).clear();
+    }
+
+    private static ActionResult onExplodeDamage(Explosion explosion, Entity entity) {
+        World world = entity.getWorld();
+        if (explosion.getCausingEntity() instanceof ServerPlayerEntity player
+                && !player.isDisconnected()) {
+            return checkPermissions(player, entity.getBlockPos(), world,
+                    Permissions.ATTACK_ENTITIES) == ActionResult.FAIL ? ActionResult.FAIL
+                            : ActionResult.PASS;
+        }
+
+        if (!FactionsMod.CONFIG.BLOCK_TNT) {
+            return ActionResult.PASS;
+        }
+
+        Claim claim = Claim.getAt(entity.getBlockPos(), DimensionHandle.of(world));
+        return claim == null || isExposedToExplosion(claim, Permissions.ATTACK_ENTITIES)
+                ? ActionResult.PASS
+                : ActionResult.FAIL;
+    }
+
+    /**
+     * @return The indices of the blocks an explosion without a player behind it may destroy
+     */
+    static BitSet getExposedToExplosion(DimensionHandle dimension, List<BlockPos> blocks) {
+        BitSet allowed = new BitSet(blocks.size());
+
+        Long2ByteOpenHashMap decisions = new Long2ByteOpenHashMap();
+        decisions.defaultReturnValue(UNRESOLVED);
+
+        for (int i = 0; i < blocks.size(); i++) {
+            long chunk = Claim.getPackedChunk(blocks.get(i));
+            byte decision = decisions.get(chunk);
+            if (decision == UNRESOLVED) {
+                Claim claim = Claim.get(chunk, dimension);
+                decision = claim == null || isExposedToExplosion(claim, Permissions.BREAK_BLOCKS)
+                        ? ALLOWED
+                        : DENIED;
+                decisions.put(chunk, decision);
+            }
+
+            if (decision == ALLOWED) {
+                allowed.set(i);
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Whether a claim is open to explosions without a player behind them, either because guests
+     * have the permission or because its faction has more claims than power
+     */
+    static boolean isExposedToExplosion(Claim claim, Permissions permission) {
+        Faction faction = claim.getFaction();
+        return faction.getDemesne() > faction.getPower()
+                || faction.guest_permissions.contains(permission);
+    }
 
     private static ActionResult onUseBlock(PlayerEntity player, World world, Hand hand,
             BlockHitResult hitResult) {
@@ -160,15 +190,15 @@ public class InteractionManager {
     }
 
     private static ActionResult onPlaceBlock(ItemUsageContext context) {
-        Identifier placeId = null;
+        Block placed = null;
         ItemStack stack = context.getStack();
         Item item = stack.getItem();
         if (item instanceof BlockItem blockItem) {
-            placeId = Registries.BLOCK.getId(blockItem.getBlock());
+            placed = blockItem.getBlock();
         }
 
         if (checkPermissions(context.getPlayer(), context.getBlockPos(), context.getWorld(),
-                Permissions.PLACE_BLOCKS, placeId) == ActionResult.FAIL) {
+                Permissions.PLACE_BLOCKS, placed) == ActionResult.FAIL) {
             InteractionsUtil.warn(context.getPlayer(), InteractionsUtilActions.PLACE_BLOCKS);
             InteractionsUtil.sync(context.getPlayer(), stack, context.getHand());
             return ActionResult.FAIL;
@@ -193,21 +223,18 @@ public class InteractionManager {
                 BlockPos raycastPos = raycastResult.getBlockPos();
 
                 if (fluid == Fluids.EMPTY) {
-                    Identifier targetFluidId = Registries.FLUID
-                            .getId(world.getFluidState(raycastPos).getFluid());
+                    Fluid targetFluid = world.getFluidState(raycastPos).getFluid();
 
                     if (checkPermissions(player, raycastPos, world,
-                            Permissions.BREAK_BLOCKS, targetFluidId) == ActionResult.FAIL) {
+                            Permissions.BREAK_BLOCKS, targetFluid) == ActionResult.FAIL) {
                         InteractionsUtil.warn(player,
                                 InteractionsUtilActions.PLACE_OR_PICKUP_LIQUIDS);
                         InteractionsUtil.sync(player, player.getStackInHand(hand), hand);
                         return TypedActionResult.fail(player.getStackInHand(hand));
                     }
                 } else {
-                    Identifier fluidId = Registries.FLUID.getId(fluid);
-
                     if (checkPermissions(player, raycastPos, world,
-                            Permissions.PLACE_BLOCKS, fluidId) == ActionResult.FAIL) {
+                            Permissions.PLACE_BLOCKS, fluid) == ActionResult.FAIL) {
                         InteractionsUtil.warn(player,
                                 InteractionsUtilActions.PLACE_OR_PICKUP_LIQUIDS);
                         InteractionsUtil.sync(player, player.getStackInHand(hand), hand);
@@ -216,7 +243,7 @@ public class InteractionManager {
 
                     BlockPos placePos = raycastPos.add(raycastResult.getSide().getVector());
                     if (checkPermissions(player, placePos, world,
-                            Permissions.PLACE_BLOCKS, fluidId) == ActionResult.FAIL) {
+                            Permissions.PLACE_BLOCKS, fluid) == ActionResult.FAIL) {
                         InteractionsUtil.warn(player,
                                 InteractionsUtilActions.PLACE_OR_PICKUP_LIQUIDS);
                         InteractionsUtil.sync(player, player.getStackInHand(hand), hand);
@@ -301,138 +328,130 @@ public class InteractionManager {
     }
 
     private static ActionResult checkPermissions(PlayerEntity player, BlockPos position,
-            World world, Permissions permission, @Nullable Identifier wildernessTarget) {
-        if (!FactionsMod.CONFIG.CLAIM_PROTECTION) {
-            return ActionResult.PASS;
-        }
-
-        User user = User.get(player.getUuid());
-        if (player.hasPermissionLevel(FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL) && user.bypass) {
-            return ActionResult.PASS;
-        }
-
-        if ((permission == Permissions.ATTACK_ENTITIES || permission == Permissions.USE_ENTITIES)
-                && FactionsMod.CONFIG.ALLOW_ENTITY_INTERACTIONS_IN_CLAIMS) {
+            World world, Permissions permission, @Nullable Object wildernessTarget) {
+        // Client side callbacks pass, the server decides
+        Session session = Session.get(player);
+        if (session == null || isExempt(session, permission)) {
             return ActionResult.PASS;
         }
 
-        String dimension = world.getRegistryKey().getValue().toString();
-        ChunkPos chunkPosition = world.getChunk(position).getPos();
-
-        Claim claim = Claim.get(chunkPosition.x, chunkPosition.z, dimension);
+        Claim claim = session.getClaimAt(position, DimensionHandle.of(world));
         if (claim == null) {
             return evaluateWilderness(permission, wildernessTarget);
         }
 
-        Faction claimFaction = claim.getFaction();
+        User user = session.getUser();
+        Faction userFaction = user.isInFaction() ? session.getFaction() : null;
+
+        return claim.getFaction().getPermissionTable().allows(userFaction, user.rank,
+                claim.accessLevel, permission) ? ActionResult.SUCCESS : ActionResult.FAIL;
+    }
 
-        if (!user.isInFaction()) {
-            return claimFaction.guest_permissions.contains(permission)
-                    ? ActionResult.SUCCESS
-                    : ActionResult.FAIL;
+    /**
+     * Checks a permission at many positions at once, with the same outcome as checking them one
+     * by one. Claims and decisions are resolved once per chunk.
+     *
+     * @return The indices, in iteration order, of the positions where the action is allowed
+     */
+    public static BitSet checkPermissions(ServerPlayerEntity player, World world,
+            Permissions permission, Collection<BlockPos> positions) {
+        BitSet allowed = new BitSet(positions.size());
+        Session session = Session.get(player);
+        if (isExempt(session, permission)) {
+            allowed.set(0, positions.size());
+            return allowed;
         }
 
-        Faction userFaction = user.getFaction();
+        DimensionHandle dimension = DimensionHandle.of(world);
+        User user = session.getUser();
+        Faction userFaction = user.isInFaction() ? session.getFaction() : null;
+
+        // Absent chunks have not been resolved yet
+        Long2ByteOpenHashMap decisions = new Long2ByteOpenHashMap();
+        decisions.defaultReturnValue(UNRESOLVED);
+
+        int index = 0;
+        for (BlockPos pos : positions) {
+            long chunk = Claim.getPackedChunk(pos);
+            byte decision = decisions.get(chunk);
+            if (decision == UNRESOLVED) {
+                Claim claim = Claim.get(chunk, dimension);
+                if (claim == null) {
+                    decision = WILDERNESS;
+                } else {
+                    decision = claim.getFaction().getPermissionTable().allows(userFaction,
+                            user.rank, claim.accessLevel, permission) ? ALLOWED : DENIED;
+                }
+                decisions.put(chunk, decision);
+            }
 
-        if (claimFaction == userFaction
-                && (getRankLevel(claim.accessLevel) <= getRankLevel(user.rank)
-                        || (user.rank == User.Rank.GUEST
-                                && claimFaction.guest_permissions.contains(permission)
-                                && claim.accessLevel == User.Rank.MEMBER))) {
-            return ActionResult.SUCCESS;
+            if (decision == ALLOWED || (decision == WILDERNESS
+                    && evaluateWilderness(permission, getWildernessTarget(world, pos, permission))
+                            != ActionResult.FAIL)) {
+                allowed.set(index);
+            }
+            index++;
         }
+        return allowed;
+    }
 
-        if (FactionsMod.CONFIG.RELATIONSHIPS.ALLY_OVERRIDES_PERMISSIONS
-                && claimFaction.isMutualAllies(userFaction.getID())
-                && claim.accessLevel == User.Rank.MEMBER) {
-            return ActionResult.SUCCESS;
+    /**
+     * Whether claims do not restrict the player and permission at all
+     */
+    private static boolean isExempt(Session session, Permissions permission) {
+        if (!FactionsMod.CONFIG.CLAIM_PROTECTION || session.isBypassing()) {
+            return true;
         }
 
-        if (claimFaction.getRelationship(userFaction.getID()).permissions.contains(permission)
-                && claim.accessLevel == User.Rank.MEMBER) {
-            return ActionResult.SUCCESS;
+        return (permission == Permissions.ATTACK_ENTITIES || permission == Permissions.USE_ENTITIES)
+                && FactionsMod.CONFIG.ALLOW_ENTITY_INTERACTIONS_IN_CLAIMS;
+    }
+
+    /**
+     * @return The block that breaking at a position would target, the only per-block input to the
+     *         wilderness rules. Unloaded chunks are not loaded to find out, their blocks cannot be
+     *         broken before they are loaded anyway.
+     */
+    @Nullable
+    private static Block getWildernessTarget(World world, BlockPos pos, Permissions permission) {
+        if (permission != Permissions.BREAK_BLOCKS || FactionsMod.CONFIG.WILDERNESS == null) {
+            return null;
         }
 
-        return ActionResult.FAIL;
+        if (!world.isChunkLoaded(ChunkSectionPos.getSectionCoord(pos.getX()),
+                ChunkSectionPos.getSectionCoord(pos.getZ()))) {
+            return null;
+        }
+        return world.getBlockState(pos).getBlock();
     }
 
+    /**
+     * @param target The block or fluid broken or placed, when known
+     */
     private static ActionResult evaluateWilderness(Permissions permission,
-            @Nullable Identifier target) {
-        if (FactionsMod.CONFIG.WILDERNESS == null) {
+            @Nullable Object target) {
+        WildernessConfig wilderness = FactionsMod.CONFIG.WILDERNESS;
+        if (wilderness == null) {
             return ActionResult.PASS;
         }
 
         switch (permission) {
             case BREAK_BLOCKS -> {
-                if (target == null) {
-                    return ActionResult.PASS;
-                }
-                if (FactionsMod.CONFIG.WILDERNESS.BREAK_MOD_BLACKLIST
-                        .contains(target.getNamespace())) {
-                    return ActionResult.FAIL;
-                }
-
-                return FactionsMod.CONFIG.WILDERNESS.BREAK_BLACKLIST.contains(target.toString())
-                        ? ActionResult.FAIL
-                        : ActionResult.PASS;
+                return target == null || wilderness.getRules().canBreak(target)
+                        ? ActionResult.PASS
+                        : ActionResult.FAIL;
             }
             case PLACE_BLOCKS -> {
-                if (target == null) {
-                    return ActionResult.PASS;
-                }
-
-                if (FactionsMod.CONFIG.WILDERNESS.PLACE_MOD_BLACKLIST
-                        .contains(target.getNamespace())) {
-                    return ActionResult.FAIL;
-                }
-
-                Identifier waterId = Registries.FLUID.getId(Fluids.WATER);
-                Identifier lavaId = Registries.FLUID.getId(Fluids.LAVA);
-
-                if (target.equals(waterId)) {
-                    return FactionsMod.CONFIG.WILDERNESS.ALLOW_WATER_PLACEMENT ? ActionResult.PASS
-                            : ActionResult.FAIL;
-                }
-
-                if (target.equals(lavaId)) {
-                    return FactionsMod.CONFIG.WILDERNESS.ALLOW_LAVA_PLACEMENT ? ActionResult.PASS
-                            : ActionResult.FAIL;
-                }
-
-                return FactionsMod.CONFIG.WILDERNESS.PLACE_BLACKLIST.contains(target.toString())
-                        ? ActionResult.FAIL
-                        : ActionResult.PASS;
+                return target == null || wilderness.getRules().canPlace(target)
+                        ? ActionResult.PASS
+                        : ActionResult.FAIL;
             }
             case USE_BLOCKS, USE_INVENTORIES, USE_ENTITIES -> {
-                return FactionsMod.CONFIG.WILDERNESS.ALLOW_INTERACTIONS ? ActionResult.PASS
-                        : ActionResult.FAIL;
+                return wilderness.ALLOW_INTERACTIONS ? ActionResult.PASS : ActionResult.FAIL;
             }
             default -> {
                 return ActionResult.PASS;
             }
         }
     }
-
-    private static int getRankLevel(User.Rank rank) {
-        switch (rank) {
-            case OWNER -> {
-                return 3;
-            }
-            case LEADER -> {
-                return 2;
-            }
-            case COMMANDER -> {
-                return 1;
-            }
-            case MEMBER -> {
-                return 0;
-            }
-            case GUEST -> {
-                return -1;
-            }
-            default -> {
-                return -2;
-            }
-        }
-    }
 }
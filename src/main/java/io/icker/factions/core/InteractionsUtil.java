@@ -22,7 +22,8 @@ public class InteractionsUtil {
 
     public static void warn(PlayerEntity player, InteractionsUtilActions action) {
         SoundManager.warningSound(player);
-        User user = User.get(player.getUuid());
+        Session session = Session.get(player);
+        User user = session != null ? session.getUser() : User.get(player.getUuid());
         new Message("You can't %s here.", action.getWarningText()).fail().send(player, !user.radar);
     }
 
@@ -1,32 +1,134 @@
 package io.icker.factions.core;
 
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import io.icker.factions.FactionsMod;
 import io.icker.factions.api.events.MiscEvents;
 import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
+import io.icker.factions.database.Backup;
+import io.icker.factions.database.Database;
+import io.icker.factions.database.SafeStorage;
 import io.icker.factions.util.Message;
+import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
 
 public class ServerManager {
+    /**
+     * Runs before every other server starting listener, so they can rely on loaded data
+     */
+    private static final Identifier LOAD_PHASE = new Identifier(FactionsMod.MODID, "load");
+
     public static void register() {
+        Session.register();
+        ServerLifecycleEvents.SERVER_STARTING.register(LOAD_PHASE, ServerManager::load);
+        ServerLifecycleEvents.SERVER_STARTING.addPhaseOrdering(LOAD_PHASE, Event.DEFAULT_PHASE);
+        ServerLifecycleEvents.SERVER_STARTED.register(ServerManager::audit);
         ServerPlayConnectionEvents.JOIN.register(ServerManager::playerJoin);
+        ServerPlayConnectionEvents.DISCONNECT.register(ServerManager::playerDisconnect);
+        ServerPlayerEvents.AFTER_RESPAWN.register(ServerManager::playerRespawn);
         MiscEvents.ON_SAVE.register(ServerManager::save);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> Database.close());
+        ServerTickEvents.END_SERVER_TICK.register(ServerManager::tick);
+    }
+
+    /**
+     * Reads and indexes every store in parallel
+     */
+    private static void load(MinecraftServer server) {
+        long start = System.nanoTime();
+        Backup.prepareRestore();
+        ExecutorService pool = Executors.newFixedThreadPool(3, task -> {
+            Thread thread = new Thread(task, "Factions Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            CompletableFuture.allOf(
+                    CompletableFuture.runAsync(() -> load("claims", Claim::load), pool),
+                    CompletableFuture.runAsync(() -> load("factions", Faction::load), pool),
+                    CompletableFuture.runAsync(() -> load("users", User::load), pool)).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to load factions data", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        Backup.finishRestore();
+
+        FactionsMod.LOGGER.info("Loaded factions data in {} ms",
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void load(String name, Runnable loader) {
+        long start = System.nanoTime();
+        loader.run();
+        FactionsMod.LOGGER.info("Loaded and indexed {} in {} ms", name,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Removes data pointing at missing factions or dimensions. Runs once the worlds exist, as
+     * dimensions are only known after the server has started.
+     */
+    private static void audit(MinecraftServer server) {
+        Faction.audit();
+        Claim.audit();
+        User.audit();
+    }
+
+    private static void tick(MinecraftServer server) {
+        int interval = FactionsMod.CONFIG.DATABASE.JOURNAL_INTERVAL_TICKS;
+        if (interval > 0 && server.getTicks() % interval == 0) {
+            Database.journal();
+        }
+        if (server.getTicks() % 20 == 0) {
+            SafeStorage.unloadIdle();
+        }
+
+        int backupInterval = FactionsMod.CONFIG.DATABASE.BACKUP_INTERVAL_MINUTES * 1200;
+        if (backupInterval > 0 && server.getTicks() % backupInterval == 0) {
+            backup();
+        }
     }
 
-    private static void save(MinecraftServer server) {
+    /**
+     * Saves every store and archives the saved copies. The server thread only pays for copying
+     * changed records.
+     *
+     * @return The archive, completed on the database writer thread
+     */
+    public static CompletableFuture<File> backup() {
         Claim.save();
         Faction.save();
         User.save();
+        return Database.backup();
+    }
+
+    static void save(MinecraftServer server) {
+        Claim.save();
+        Faction.save();
+        User.save();
+        SafeStorage.save();
     }
 
     private static void playerJoin(ServerPlayNetworkHandler handler, PacketSender sender,
             MinecraftServer server) {
         ServerPlayerEntity player = handler.getPlayer();
-        User user = User.get(player.getUuid());
+        User user = Session.get(player).getUser();
+        user.setPlayer(player);
 
         if (user.isInFaction()) {
             Faction faction = user.getFaction();
@@ -34,4 +136,17 @@ public class ServerManager {
             new Message(faction.getMOTD()).prependFaction(faction).send(player, false);
         }
     }
+
+    private static void playerDisconnect(ServerPlayNetworkHandler handler, MinecraftServer server) {
+        ServerPlayerEntity player = handler.getPlayer();
+        User user = Session.get(player).getUser();
+        Session.close(player);
+        user.setPlayer(null);
+        User.evict(user);
+    }
+
+    private static void playerRespawn(ServerPlayerEntity oldPlayer, ServerPlayerEntity newPlayer,
+            boolean alive) {
+        Session.get(newPlayer).getUser().setPlayer(newPlayer);
+    }
 }
@@ -0,0 +1,215 @@
+package io.icker.factions.core;
+
+import java.util.HashMap;
+import java.util.UUID;
+import org.jetbrains.annotations.Nullable;
+import io.icker.factions.FactionsMod;
+import io.icker.factions.api.events.ClaimEvents;
+import io.icker.factions.api.events.FactionEvents;
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.api.persistents.Faction;
+import io.icker.factions.api.persistents.User;
+import io.icker.factions.util.DimensionHandle;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+/**
+ * What the hooks of one online player keep looking up: their user, faction, dimension and the
+ * claim they stand in. Stored on the player entity, so hot paths reach it with a field access
+ * instead of repeating the lookups several times per tick.
+ *
+ * <p>Cached values are dropped by the faction and claim events that change them. Only used on the
+ * server thread.
+ */
+public class Session {
+    private static final int BYPASS_CHECK_TICKS = 20;
+
+    private static final HashMap<UUID, Session> ONLINE = new HashMap<UUID, Session>();
+
+    /**
+     * Implemented on {@link ServerPlayerEntity} by a mixin
+     */
+    public interface Holder {
+        @Nullable
+        Session factions$getSession();
+
+        void factions$setSession(@Nullable Session session);
+    }
+
+    private final ServerPlayerEntity player;
+
+    private User user;
+    private Faction faction;
+    private boolean factionResolved = false;
+
+    private World world;
+    private DimensionHandle dimension;
+
+    private DimensionHandle claimDimension;
+    private long claimChunk;
+    private Claim claim;
+
+    private boolean bypassPermission;
+    private int bypassCheckedAge = -BYPASS_CHECK_TICKS;
+
+    private Session(ServerPlayerEntity player) {
+        this.player = player;
+    }
+
+    public static void register() {
+        FactionEvents.MEMBER_JOIN.register((faction, user) -> invalidate(user.getPlayer()));
+        FactionEvents.MEMBER_LEAVE.register((faction, user) -> invalidate(user.getPlayer()));
+        FactionEvents.DISBAND.register(faction -> invalidateAll());
+        FactionEvents.REMOVE_ALL_CLAIMS.register(faction -> invalidateAll());
+        ClaimEvents.ADD.register(claim -> invalidateClaims(claim.getDimension(),
+                claim.getPackedChunk()));
+        ClaimEvents.REMOVE.register((x, z, level, faction) -> invalidateClaims(
+                DimensionHandle.of(level), ChunkPos.toLong(x, z)));
+    }
+
+    /**
+     * Returns the session of a player, creating it on first use. A respawn replaces the player
+     * entity and with it the session.
+     */
+    public static Session get(ServerPlayerEntity player) {
+        Holder holder = (Holder) player;
+        Session session = holder.factions$getSession();
+        if (session == null) {
+            session = new Session(player);
+            holder.factions$setSession(session);
+            ONLINE.put(player.getUuid(), session);
+        }
+        return session;
+    }
+
+    /**
+     * @return The session of a server player, or null for any other player entity
+     */
+    @Nullable
+    public static Session get(PlayerEntity player) {
+        return player instanceof ServerPlayerEntity serverPlayer ? get(serverPlayer) : null;
+    }
+
+    /**
+     * Drops the session of a disconnecting player
+     */
+    public static void close(ServerPlayerEntity player) {
+        ((Holder) player).factions$setSession(null);
+        ONLINE.remove(player.getUuid());
+    }
+
+    /**
+     * Drops everything cached by the session of a player
+     */
+    public static void invalidate(@Nullable ServerPlayerEntity player) {
+        Session session = player == null ? null : ((Holder) player).factions$getSession();
+        if (session != null) {
+            session.invalidate();
+        }
+    }
+
+    /**
+     * Drops everything cached by every session, after changes made without events such as
+     * imports and audits
+     */
+    public static void invalidateAll() {
+        for (Session session : ONLINE.values()) {
+            session.invalidate();
+        }
+    }
+
+    private static void invalidateClaims(DimensionHandle dimension, long chunk) {
+        for (Session session : ONLINE.values()) {
+            if (session.claimDimension == dimension && session.claimChunk == chunk) {
+                session.claimDimension = null;
+            }
+        }
+    }
+
+    private void invalidate() {
+        user = null;
+        faction = null;
+        factionResolved = false;
+        claimDimension = null;
+        bypassCheckedAge = -BYPASS_CHECK_TICKS;
+    }
+
+    public ServerPlayerEntity getPlayer() {
+        return player;
+    }
+
+    public User getUser() {
+        if (user == null) {
+            user = User.get(player.getUuid());
+        }
+        return user;
+    }
+
+    @Nullable
+    public Faction getFaction() {
+        if (!factionResolved) {
+            faction = getUser().getFaction();
+            factionResolved = true;
+        }
+        return faction;
+    }
+
+    /**
+     * @return The dimension the player is in
+     */
+    public DimensionHandle getDimension() {
+        World current = player.getWorld();
+        if (current != world) {
+            world = current;
+            dimension = DimensionHandle.of(current);
+        }
+        return dimension;
+    }
+
+    /**
+     * @return The claim of the chunk the player stands in
+     */
+    @Nullable
+    public Claim getClaim() {
+        return getClaim(player.getChunkPos().toLong(), getDimension());
+    }
+
+    /**
+     * Finds the claim covering a block, answered from the cache while it is in the chunk of the
+     * previous lookup
+     */
+    @Nullable
+    public Claim getClaimAt(BlockPos pos, DimensionHandle dimension) {
+        return getClaim(Claim.getPackedChunk(pos), dimension);
+    }
+
+    @Nullable
+    private Claim getClaim(long chunk, DimensionHandle dimension) {
+        if (dimension != claimDimension || chunk != claimChunk) {
+            claim = Claim.get(chunk, dimension);
+            claimDimension = dimension;
+            claimChunk = chunk;
+        }
+        return claim;
+    }
+
+    /**
+     * Whether the player has bypass turned on and the permission level to use it. The permission
+     * level is checked at most once a second.
+     */
+    public boolean isBypassing() {
+        if (!getUser().bypass) {
+            return false;
+        }
+
+        int age = player.age;
+        if (age < bypassCheckedAge || age - bypassCheckedAge >= BYPASS_CHECK_TICKS) {
+            bypassPermission = player.hasPermissionLevel(FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL);
+            bypassCheckedAge = age;
+        }
+        return bypassPermission;
+    }
+}
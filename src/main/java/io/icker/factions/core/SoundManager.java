@@ -7,6 +7,7 @@ import io.icker.factions.api.persistents.User;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.registry.entry.RegistryEntry;
 import net.minecraft.server.PlayerManager;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.sound.SoundCategory;
 import net.minecraft.sound.SoundEvent;
 import net.minecraft.sound.SoundEvents;
@@ -29,17 +30,17 @@ public class SoundManager {
 
     private static void playFaction(Faction faction, RegistryEntry.Reference<SoundEvent> soundEvent,
             float pitch) {
-        for (User user : faction.getUsers()) {
-            PlayerEntity player = FactionsManager.playerManager.getPlayer(user.getID());
-            if (player != null && (user.sounds == User.SoundMode.ALL
-                    || user.sounds == User.SoundMode.FACTION)) {
+        for (ServerPlayerEntity player : faction.getOnlineMembers()) {
+            User user = Session.get(player).getUser();
+            if (user.sounds == User.SoundMode.ALL || user.sounds == User.SoundMode.FACTION) {
                 player.playSound(soundEvent.value(), SoundCategory.PLAYERS, 0.2F, pitch);
             }
         }
     }
 
     public static void warningSound(PlayerEntity player) {
-        User user = User.get(player.getUuid());
+        Session session = Session.get(player);
+        User user = session != null ? session.getUser() : User.get(player.getUuid());
         if (user.sounds == User.SoundMode.ALL || user.sounds == User.SoundMode.WARNINGS) {
             player.playSound(SoundEvents.BLOCK_NOTE_BLOCK_BASS.value(), SoundCategory.PLAYERS, 0.5F,
                     1.0F);
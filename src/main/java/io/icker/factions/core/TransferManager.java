@@ -0,0 +1,401 @@
+package io.icker.factions.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import io.icker.factions.FactionsMod;
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.api.persistents.Faction;
+import io.icker.factions.api.persistents.User;
+import io.icker.factions.database.Database;
+import io.icker.factions.database.Name;
+import io.icker.factions.util.Message;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.StringNbtReader;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+
+/**
+ * Streams factions, users and claims to and from a single file, for moving data between servers
+ * and storage backends. Every record is {@code {Type: "<store>", Data: {...}}} with the data in
+ * the form the database stores it, factions first so users and claims can refer to them.
+ *
+ * <p>Files are read and written on their own thread. Imported records reach the server thread in
+ * bounded batches and are applied a limited number per tick, so a large import never stalls it.
+ */
+public class TransferManager {
+    private static final File DIRECTORY =
+            FabricLoader.getInstance().getGameDir().resolve("factions").toFile();
+    public static final File EXPORTS = new File(DIRECTORY, "exports");
+    public static final File IMPORTS = new File(DIRECTORY, "imports");
+
+    private static final Class<?>[] TYPES = {Faction.class, User.class, Claim.class};
+    private static final int BATCH_SIZE = 1000;
+    private static final int QUEUED_BATCHES = 16;
+    private static final int APPLIED_PER_TICK = 2000;
+    private static final int PROGRESS_INTERVAL = 100_000;
+    private static final DateTimeFormatter NAME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    /**
+     * Marks the end of an import, after the last batch
+     */
+    private static final List<Object> END = new ArrayList<Object>();
+
+    public enum Format {
+        SNBT(".snbt"), NBT(".nbt");
+
+        private final String extension;
+
+        private Format(String extension) {
+            this.extension = extension;
+        }
+
+        private static Format of(String name) {
+            return name.endsWith(NBT.extension) ? NBT : SNBT;
+        }
+    }
+
+    private static class Import {
+        private final ServerCommandSource source;
+        private final String name;
+        private final BlockingQueue<List<Object>> batches =
+                new ArrayBlockingQueue<List<Object>>(QUEUED_BATCHES);
+        private final long start = System.nanoTime();
+        private volatile int skipped = 0;
+        /**
+         * Set once the reader thread stops, however it stops, after its last batch is queued
+         */
+        private volatile boolean ended = false;
+        private List<Object> current = List.of();
+        private int position = 0;
+        private int applied = 0;
+
+        private Import(ServerCommandSource source, String name) {
+            this.source = source;
+            this.name = name;
+        }
+    }
+
+    private static Import running;
+
+    public static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(TransferManager::tick);
+    }
+
+    /**
+     * @return The names of the files that can be imported
+     */
+    public static List<String> listImports() {
+        String[] names = IMPORTS.list((directory, name) -> name.endsWith(Format.SNBT.extension)
+                || name.endsWith(Format.NBT.extension));
+        return names == null ? List.of() : List.of(names);
+    }
+
+    public static boolean isImporting() {
+        return running != null;
+    }
+
+    /**
+     * Saves every store and writes the saved copies to a new file in {@code factions/exports}
+     */
+    public static void export(ServerCommandSource source, Format format) {
+        MinecraftServer server = source.getServer();
+        ServerManager.save(server);
+
+        ArrayList<List<?>> stores = new ArrayList<List<?>>();
+        for (Class<?> clazz : TYPES) {
+            stores.add(Database.getSaved(clazz));
+        }
+
+        File file = new File(EXPORTS, LocalDateTime.now().format(NAME_FORMAT) + format.extension);
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                int count = write(file, format, stores, written -> server.execute(() -> source
+                        .sendFeedback(() -> new Message("Exported %d records", written).raw(),
+                                false)));
+                double seconds = (System.nanoTime() - start) / 1e9;
+                server.execute(() -> source.sendFeedback(
+                        () -> new Message("Exported %d records to %s in %.1fs (%.0f/s)", count,
+                                file.getName(), seconds, count / Math.max(seconds, 0.001)).raw(),
+                        true));
+            } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+                FactionsMod.LOGGER.error("Failed to export factions data to {}", file, e);
+                server.execute(() -> source
+                        .sendError(new Message("Export failed, see the server log").raw()));
+            }
+        }, "Factions Export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private interface Progress {
+        void report(int count);
+    }
+
+    private static int write(File file, Format format, List<List<?>> stores, Progress progress)
+            throws IOException, ReflectiveOperationException {
+        EXPORTS.mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        int count = 0;
+
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            BufferedWriter text = null;
+            DataOutputStream binary = null;
+            if (format == Format.SNBT) {
+                text = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+            } else {
+                binary = new DataOutputStream(
+                        new BufferedOutputStream(new GZIPOutputStream(stream)));
+            }
+
+            for (int i = 0; i < TYPES.length; i++) {
+                for (Object item : stores.get(i)) {
+                    NbtCompound record = encode(TYPES[i], item);
+                    if (text != null) {
+                        text.write(record.asString());
+                        text.newLine();
+                    } else {
+                        NbtIo.write(record, binary);
+                    }
+
+                    if (++count % PROGRESS_INTERVAL == 0) {
+                        progress.report(count);
+                    }
+                }
+            }
+
+            if (text != null) {
+                text.close();
+            } else {
+                binary.close();
+            }
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    private static <T> NbtCompound encode(Class<T> clazz, Object item)
+            throws IOException, ReflectiveOperationException {
+        NbtCompound record = new NbtCompound();
+        record.putString("Type", getType(clazz));
+        record.put("Data", Database.toNbt(clazz, clazz.cast(item)));
+        return record;
+    }
+
+    /**
+     * Starts importing a file from {@code factions/imports}. Records replace loaded records with
+     * the same key.
+     *
+     * @return Whether the import was started
+     */
+    public static boolean start(ServerCommandSource source, String name) {
+        File file = new File(IMPORTS, name);
+        if (running != null || !listImports().contains(name) || !file.isFile()) {
+            return false;
+        }
+
+        Import transfer = new Import(source, name);
+        running = transfer;
+
+        Thread thread = new Thread(() -> read(transfer, file), "Factions Import");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private static void read(Import transfer, File file) {
+        ArrayList<Object> batch = new ArrayList<Object>(BATCH_SIZE);
+        try {
+            if (Format.of(file.getName()) == Format.SNBT) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(file), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        try {
+                            batch = offer(transfer, batch, StringNbtReader.parse(line));
+                        } catch (CommandSyntaxException e) {
+                            transfer.skipped++;
+                        }
+                    }
+                }
+            } else {
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                        new GZIPInputStream(new FileInputStream(file))))) {
+                    while (hasMore(input)) {
+                        batch = offer(transfer, batch, NbtIo.read(input));
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            FactionsMod.LOGGER.error("Failed to read import {}, stopped after the last full batch",
+                    file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Also reached on errors such as running out of memory, which would otherwise leave
+            // the import running and refuse every later one until a restart
+            try {
+                if (!batch.isEmpty()) {
+                    transfer.batches.put(batch);
+                }
+                transfer.batches.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                transfer.ended = true;
+            }
+        }
+    }
+
+    private static boolean hasMore(DataInputStream input) throws IOException {
+        input.mark(1);
+        boolean more = input.read() != -1;
+        input.reset();
+        return more;
+    }
+
+    /**
+     * Decodes a record into the batch, handing the batch to the server thread once full. Blocks
+     * while the server thread is behind.
+     */
+    private static ArrayList<Object> offer(Import transfer, ArrayList<Object> batch,
+            NbtCompound record) throws InterruptedException {
+        Object item = decode(record);
+        if (item == null) {
+            transfer.skipped++;
+            return batch;
+        }
+
+        batch.add(item);
+        if (batch.size() < BATCH_SIZE) {
+            return batch;
+        }
+
+        transfer.batches.put(batch);
+        return new ArrayList<Object>(BATCH_SIZE);
+    }
+
+    private static Object decode(NbtCompound record) {
+        String type = record.getString("Type");
+        for (Class<?> clazz : TYPES) {
+            if (getType(clazz).equals(type)) {
+                try {
+                    return Database.fromNbt(clazz, record.getCompound("Data"));
+                } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void tick(MinecraftServer server) {
+        Import transfer = running;
+        if (transfer == null) {
+            return;
+        }
+
+        int applied = transfer.applied;
+        boolean finished = false;
+        for (int i = 0; i < APPLIED_PER_TICK; i++) {
+            if (transfer.position == transfer.current.size()) {
+                List<Object> next = transfer.batches.poll();
+                if (next == null) {
+                    // The reader stopped without queueing the end marker
+                    finished = transfer.ended && transfer.batches.isEmpty();
+                    break;
+                }
+                if (next == END) {
+                    finished = true;
+                    break;
+                }
+                transfer.current = next;
+                transfer.position = 0;
+            }
+
+            apply(transfer.current.get(transfer.position++));
+            if (++transfer.applied % PROGRESS_INTERVAL == 0) {
+                transfer.source.sendFeedback(
+                        () -> new Message("Imported %d records", transfer.applied).raw(), false);
+            }
+        }
+
+        // Records are replaced without events, so cached lookups may point at the old ones
+        if (transfer.applied != applied) {
+            Session.invalidateAll();
+        }
+        if (finished) {
+            finish(transfer);
+        }
+    }
+
+    private static void apply(Object item) {
+        if (item instanceof Faction faction) {
+            Faction.add(faction);
+        } else if (item instanceof User user) {
+            User.add(user);
+        } else if (item instanceof Claim claim) {
+            Claim.addQuietly(claim);
+        }
+    }
+
+    /**
+     * Refreshes the map integrations once, as claims were imported without claim events
+     */
+    private static void finish(Import transfer) {
+        running = null;
+
+        if (FactionsMod.dynmap != null) {
+            FactionsMod.dynmap.reloadAll();
+        }
+        if (FactionsMod.bluemap != null) {
+            FactionsMod.bluemap.reloadAll();
+        }
+        if (FactionsMod.squaremap != null) {
+            FactionsMod.squaremap.reloadAll();
+        }
+
+        double seconds = (System.nanoTime() - transfer.start) / 1e9;
+        int applied = transfer.applied;
+        int skipped = transfer.skipped;
+        FactionsMod.LOGGER.info("Imported {} records from {} in {} ms, skipped {}", applied,
+                transfer.name, (System.nanoTime() - transfer.start) / 1_000_000, skipped);
+        transfer.source.sendFeedback(() -> new Message(
+                "Imported %d records from %s in %.1fs (%.0f/s), skipped %d", applied,
+                transfer.name, seconds, applied / Math.max(seconds, 0.001), skipped).raw(), true);
+    }
+
+    private static String getType(Class<?> clazz) {
+        return clazz.getAnnotation(Name.class).value().toLowerCase();
+    }
+}
@@ -7,6 +7,7 @@ import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
 import io.icker.factions.command.ClaimCommand;
+import io.icker.factions.util.DimensionHandle;
 import io.icker.factions.util.Message;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
@@ -25,21 +26,23 @@ public class WorldManager {
     }
 
     private static void onMove(ServerPlayerEntity player) {
-        User user = User.get(player.getUuid());
+        Session session = Session.get(player);
+        User user = session.getUser();
         ServerWorld world = (ServerWorld) player.getWorld();
-        String dimension = world.getRegistryKey().getValue().toString();
+        DimensionHandle handle = session.getDimension();
+        String dimension = handle.getId();
         boolean isOverworld = world.getRegistryKey().equals(World.OVERWORLD);
 
-        ChunkPos chunkPos = world.getChunk(player.getBlockPos()).getPos();
+        ChunkPos chunkPos = player.getChunkPos();
 
-        Claim claim = Claim.get(chunkPos.x, chunkPos.z, dimension);
+        Claim claim = session.getClaim();
         if (user.autoclaim && !isOverworld) {
             new Message("Autoclaim is only available in the Overworld, toggled off").fail().send(player,
                     false);
             user.autoclaim = false;
         }
         if (user.autoclaim && claim == null) {
-            Faction faction = user.getFaction();
+            Faction faction = session.getFaction();
             if (FactionsMod.CONFIG.CLAIM.REQUIRE_FIRST_CLAIM_CONFIRMATION && faction.getDemesne() == 0
                     && !faction.isFirstClaimConfirmed()) {
                 ClaimCommand.queueFirstClaimConfirmation(player, faction, chunkPos, dimension, 1);
@@ -57,7 +60,7 @@ public class WorldManager {
                     new Message("Chunk (%d, %d) must be connected to your existing territory", chunkPos.x,
                             chunkPos.z).fail().send(player, false);
                 } else {
-                    claim = Claim.get(chunkPos.x, chunkPos.z, dimension);
+                    claim = session.getClaim();
                     new Message("Chunk (%d, %d) claimed by %s", chunkPos.x, chunkPos.z,
                             player.getName().getString()).send(faction);
                 }
@@ -0,0 +1,231 @@
+package io.icker.factions.database;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.jetbrains.annotations.Nullable;
+import io.icker.factions.FactionsMod;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+
+/**
+ * Point-in-time copies of every store, kept as zip archives under {@code factions/backups}. An
+ * archive holds one {@code <store>.dat} entry per store with the records in a list, the layout of
+ * a snapshot file without its gzip wrapper.
+ *
+ * <p>A restore is requested with {@link #scheduleRestore(String)}, or by writing an archive name
+ * into {@code factions/backups/restore} while the server is stopped, and happens on the next start
+ * before the stores are read. An unreadable archive restores nothing, and a store that fails to
+ * restore keeps the request for the next start.
+ */
+public class Backup {
+    private static final File DIRECTORY = new File(Database.BASE_PATH, "backups");
+    private static final File RESTORE_MARKER = new File(DIRECTORY, "restore");
+    private static final String EXTENSION = ".zip";
+    private static final String RECORDS = "CORE";
+    private static final DateTimeFormatter NAME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    @Nullable
+    private static File restoring;
+    private static Map<String, NbtList> restoredRecords = Map.of();
+    private static volatile boolean restoreFailed = false;
+
+    /**
+     * @return The names of every archive, newest first
+     */
+    public static List<String> list() {
+        String[] names = DIRECTORY.list((directory, name) -> name.endsWith(EXTENSION));
+        if (names == null) {
+            return List.of();
+        }
+
+        ArrayList<String> archives = new ArrayList<String>();
+        for (String name : names) {
+            archives.add(name.substring(0, name.length() - EXTENSION.length()));
+        }
+        archives.sort(Comparator.reverseOrder());
+        return archives;
+    }
+
+    /**
+     * Marks an archive to be restored on the next server start
+     *
+     * @return Whether the archive exists
+     */
+    public static boolean scheduleRestore(String name) throws IOException {
+        if (!list().contains(name)) {
+            return false;
+        }
+
+        Files.writeString(RESTORE_MARKER.toPath(), name, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    /**
+     * Writes an archive of store snapshots, then deletes the oldest archives beyond
+     * {@code database.backupsKept}. Runs on the database writer thread.
+     */
+    static File write(Map<Class<?>, List<?>> snapshots)
+            throws IOException, ReflectiveOperationException {
+        DIRECTORY.mkdirs();
+
+        // Names only resolve seconds, a second backup within one gets a suffix
+        String name = LocalDateTime.now().format(NAME_FORMAT);
+        File archive = getArchive(name);
+        for (int i = 2; archive.exists(); i++) {
+            archive = getArchive(name + "_" + i);
+        }
+        File temp = new File(archive.getPath() + ".tmp");
+
+        try (ZipOutputStream zip =
+                new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            DataOutputStream output = new DataOutputStream(zip);
+            for (Map.Entry<Class<?>, List<?>> entry : snapshots.entrySet()) {
+                zip.putNextEntry(new ZipEntry(getEntryName(entry.getKey())));
+                NbtCompound data = new NbtCompound();
+                data.put(RECORDS, serialize(entry.getKey(), entry.getValue()));
+                NbtIo.write(data, output);
+                output.flush();
+                zip.closeEntry();
+            }
+        }
+        Database.replace(temp, archive);
+
+        List<String> archives = list();
+        int kept = FactionsMod.CONFIG.DATABASE.BACKUPS_KEPT;
+        for (int i = kept; kept > 0 && i < archives.size(); i++) {
+            getArchive(archives.get(i)).delete();
+        }
+
+        return archive;
+    }
+
+    private static <T> NbtList serialize(Class<T> clazz, List<?> items)
+            throws IOException, ReflectiveOperationException {
+        NbtList list = new NbtList();
+        for (Object item : items) {
+            list.add(Database.serialize(clazz, clazz.cast(item)));
+        }
+        return list;
+    }
+
+    /**
+     * Picks up a requested restore, before any store is read
+     */
+    public static void prepareRestore() {
+        if (!RESTORE_MARKER.exists()) {
+            return;
+        }
+
+        try {
+            String name = Files.readString(RESTORE_MARKER.toPath(), StandardCharsets.UTF_8).trim();
+            File archive = getArchive(name);
+            if (archive.exists()) {
+                // Every entry is read up front, so an unreadable archive restores nothing
+                restoredRecords = readArchive(archive);
+                FactionsMod.LOGGER.info("Restoring factions data from {}", archive);
+                restoring = archive;
+                restoreFailed = false;
+            } else {
+                FactionsMod.LOGGER.error("Backup {} to restore does not exist", archive);
+                RESTORE_MARKER.delete();
+            }
+        } catch (IOException | RuntimeException e) {
+            FactionsMod.LOGGER.error("Failed to read restore request ({}), not restoring",
+                    RESTORE_MARKER, e);
+        }
+    }
+
+    private static Map<String, NbtList> readArchive(File archive) throws IOException {
+        HashMap<String, NbtList> records = new HashMap<String, NbtList>();
+        try (ZipFile zip = new ZipFile(archive)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                try (DataInputStream input = new DataInputStream(zip.getInputStream(entry))) {
+                    records.put(entry.getName(),
+                            NbtIo.read(input).getList(RECORDS, NbtElement.COMPOUND_TYPE));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Clears the restore request once every store has been read
+     */
+    public static void finishRestore() {
+        if (restoring == null) {
+            return;
+        }
+
+        if (restoreFailed) {
+            FactionsMod.LOGGER.error(
+                    "Restoring factions data from {} was incomplete, it is retried on next start",
+                    restoring);
+        } else {
+            FactionsMod.LOGGER.info("Restored factions data from {}", restoring);
+            RESTORE_MARKER.delete();
+        }
+        restoring = null;
+        restoredRecords = Map.of();
+    }
+
+    /**
+     * @return The records of a store in the archive being restored, or null when there is nothing
+     *         to restore for it
+     */
+    @Nullable
+    static <T> List<T> read(Class<T> clazz) {
+        File archive = restoring;
+        NbtList records = restoredRecords.get(getEntryName(clazz));
+        if (archive == null || records == null) {
+            return null;
+        }
+
+        try {
+            ArrayList<T> items = new ArrayList<T>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                items.add(Database.deserialize(clazz, records.getCompound(i)));
+            }
+            return items;
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            FactionsMod.LOGGER.error("Failed to restore {} from {}", clazz.getSimpleName(), archive,
+                    e);
+            markFailed();
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the restore request for the next start, as a store could not be restored
+     */
+    static void markFailed() {
+        restoreFailed = true;
+    }
+
+    private static String getEntryName(Class<?> clazz) {
+        return clazz.getAnnotation(Name.class).value().toLowerCase() + ".dat";
+    }
+
+    private static File getArchive(String name) {
+        return new File(DIRECTORY, name + EXTENSION);
+    }
+}
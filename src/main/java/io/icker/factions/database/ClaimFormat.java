@@ -0,0 +1,124 @@
+package io.icker.factions.database;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.api.persistents.User.Rank;
+import io.icker.factions.util.DimensionHandle;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Stores claims grouped by dimension and then by faction. Each group holds the packed chunk
+ * coordinates in a long array and the access levels in a parallel byte array, indexing into rank
+ * and faction tables written once per file.
+ */
+public final class ClaimFormat implements SnapshotFormat<Claim> {
+    public static final ClaimFormat INSTANCE = new ClaimFormat();
+
+    private static final byte NO_RANK = -1;
+
+    private static class Group {
+        private final LongArrayList chunks = new LongArrayList();
+        private final ByteArrayList access = new ByteArrayList();
+    }
+
+    private ClaimFormat() {}
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @Override
+    public void write(Collection<Claim> claims, NbtCompound root) {
+        LinkedHashMap<UUID, Integer> factions = new LinkedHashMap<UUID, Integer>();
+        LinkedHashMap<String, LinkedHashMap<Integer, Group>> levels =
+                new LinkedHashMap<String, LinkedHashMap<Integer, Group>>();
+
+        for (Claim claim : claims) {
+            int faction = factions.computeIfAbsent(claim.factionID, id -> factions.size());
+            Group group = levels.computeIfAbsent(claim.level, level -> new LinkedHashMap<>())
+                    .computeIfAbsent(faction, id -> new Group());
+            group.chunks.add(claim.getPackedChunk());
+            group.access.add(
+                    claim.accessLevel == null ? NO_RANK : (byte) claim.accessLevel.ordinal());
+        }
+
+        NbtList factionTable = new NbtList();
+        for (UUID faction : factions.keySet()) {
+            factionTable.add(NbtHelper.fromUuid(faction));
+        }
+
+        NbtList rankTable = new NbtList();
+        for (Rank rank : Rank.values()) {
+            rankTable.add(NbtString.of(rank.name()));
+        }
+
+        NbtList levelList = new NbtList();
+        for (Map.Entry<String, LinkedHashMap<Integer, Group>> level : levels.entrySet()) {
+            NbtList groupList = new NbtList();
+            for (Map.Entry<Integer, Group> group : level.getValue().entrySet()) {
+                NbtCompound groupData = new NbtCompound();
+                groupData.putInt("Faction", group.getKey());
+                groupData.putLongArray("Chunks", group.getValue().chunks.toLongArray());
+                groupData.putByteArray("Access", group.getValue().access.toByteArray());
+                groupList.add(groupData);
+            }
+
+            NbtCompound levelData = new NbtCompound();
+            levelData.putString("Level", level.getKey());
+            levelData.put("Groups", groupList);
+            levelList.add(levelData);
+        }
+
+        root.put("Factions", factionTable);
+        root.put("Ranks", rankTable);
+        root.put("Levels", levelList);
+    }
+
+    @Override
+    public void read(NbtCompound root, Consumer<Claim> consumer) {
+        NbtList factionTable = root.getList("Factions", NbtElement.INT_ARRAY_TYPE);
+        UUID[] factions = new UUID[factionTable.size()];
+        for (int i = 0; i < factions.length; i++) {
+            factions[i] = NbtHelper.toUuid(factionTable.get(i));
+        }
+
+        NbtList rankTable = root.getList("Ranks", NbtElement.STRING_TYPE);
+        Rank[] ranks = new Rank[rankTable.size()];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = Rank.valueOf(rankTable.getString(i));
+        }
+
+        NbtList levelList = root.getList("Levels", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < levelList.size(); i++) {
+            NbtCompound levelData = levelList.getCompound(i);
+            DimensionHandle level = DimensionHandle.of(levelData.getString("Level"));
+
+            NbtList groupList = levelData.getList("Groups", NbtElement.COMPOUND_TYPE);
+            for (int j = 0; j < groupList.size(); j++) {
+                NbtCompound groupData = groupList.getCompound(j);
+                UUID faction = factions[groupData.getInt("Faction")];
+                long[] chunks = groupData.getLongArray("Chunks");
+                byte[] access = groupData.getByteArray("Access");
+
+                for (int k = 0; k < chunks.length; k++) {
+                    Claim claim = new Claim(ChunkPos.getPackedX(chunks[k]),
+                            ChunkPos.getPackedZ(chunks[k]), level, faction);
+                    claim.accessLevel = access[k] == NO_RANK ? null : ranks[access[k]];
+                    consumer.accept(claim);
+                }
+            }
+        }
+    }
+}
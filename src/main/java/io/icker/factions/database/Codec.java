@@ -0,0 +1,96 @@
+package io.icker.factions.database;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import io.icker.factions.FactionsMod;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+
+/**
+ * Reads, writes and copies one persistent class without reflection. Implementations are generated
+ * at build time for every class with {@link Field} annotations, as {@code <ClassName>Codec} next to
+ * the class, and expose a single {@code INSTANCE}. Classes without a generated codec fall back to
+ * a {@link ReflectiveCodec}.
+ */
+public abstract class Codec<T> {
+    private static final ConcurrentHashMap<Class<?>, Codec<?>> CODECS =
+            new ConcurrentHashMap<Class<?>, Codec<?>>();
+
+    public abstract NbtCompound encode(T item) throws IOException, ReflectiveOperationException;
+
+    public abstract T decode(NbtCompound compound)
+            throws IOException, ReflectiveOperationException;
+
+    public abstract T copy(T item) throws ReflectiveOperationException;
+
+    protected static <V> NbtElement encodeValue(Class<V> clazz, V value)
+            throws IOException, ReflectiveOperationException {
+        return serialize(clazz, value);
+    }
+
+    protected static <V> V decodeValue(Class<V> clazz, NbtElement value)
+            throws IOException, ReflectiveOperationException {
+        return deserialize(clazz, value);
+    }
+
+    protected static <V> V copyValue(Class<V> clazz, V value) throws ReflectiveOperationException {
+        return copy(clazz, value);
+    }
+
+    static <T> NbtElement serialize(Class<T> clazz, T value)
+            throws IOException, ReflectiveOperationException {
+        if (SerializerRegistry.contains(clazz)) {
+            return SerializerRegistry.toNbtElement(clazz, value);
+        }
+        return get(clazz).encode(value);
+    }
+
+    static <T> T deserialize(Class<T> clazz, NbtElement value)
+            throws IOException, ReflectiveOperationException {
+        if (SerializerRegistry.contains(clazz)) {
+            return SerializerRegistry.fromNbtElement(clazz, value);
+        }
+        return get(clazz).decode((NbtCompound) value);
+    }
+
+    static <T> T copy(Class<T> clazz, T value) throws ReflectiveOperationException {
+        if (SerializerRegistry.contains(clazz)) {
+            return SerializerRegistry.copy(clazz, value);
+        }
+        return get(clazz).copy(value);
+    }
+
+    /**
+     * @return The generated codec of a class, or a reflective one when it has none
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Codec<T> get(Class<T> clazz) {
+        Codec<?> codec = CODECS.get(clazz);
+        if (codec == null) {
+            codec = find(clazz);
+            if (codec == null) {
+                codec = new ReflectiveCodec<T>(clazz);
+            }
+            CODECS.putIfAbsent(clazz, codec);
+        }
+        return (Codec<T>) codec;
+    }
+
+    /**
+     * @return The generated codec of a class, or null when it has none
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Codec<T> find(Class<T> clazz) {
+        try {
+            Class<?> codecClass =
+                    Class.forName(clazz.getName() + "Codec", true, clazz.getClassLoader());
+            return (Codec<T>) codecClass.getField("INSTANCE").get(null);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            FactionsMod.LOGGER.warn("Unusable generated codec for {}, using reflection",
+                    clazz.getName(), e);
+            return null;
+        }
+    }
+}
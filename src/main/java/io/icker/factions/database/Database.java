@@ -2,180 +2,358 @@ package io.icker.factions.database;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import org.jetbrains.annotations.Nullable;
 import io.icker.factions.FactionsMod;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
-import net.minecraft.nbt.NbtIo;
-import net.minecraft.nbt.NbtList;
 
 public class Database {
-    private static final File BASE_PATH =
+    static final File BASE_PATH =
             FabricLoader.getInstance().getGameDir().resolve("factions").toFile();
-    private static final HashMap<Class<?>, HashMap<String, Field>> cache =
-            new HashMap<Class<?>, HashMap<String, Field>>();
-    private static final String KEY = "CORE";
+    static final DatabaseWriter WRITER = new DatabaseWriter();
+    private static final ConcurrentHashMap<Class<?>, Store<?>> stores =
+            new ConcurrentHashMap<Class<?>, Store<?>>();
+
+    private static final String NBT = "nbt";
+    private static final ConcurrentHashMap<String, StorageBackend.Provider> backends =
+            new ConcurrentHashMap<String, StorageBackend.Provider>();
+
+    static {
+        registerBackend(NBT, new StorageBackend.Provider() {
+            @Override
+            public <T> StorageBackend<T> create(Class<T> clazz, File directory, String name,
+                    Function<T, String> key, StorageBackend<T> snapshot) {
+                return snapshot;
+            }
+        });
+        registerBackend("sqlite", SqlStorage.PROVIDER);
+    }
+
+    /**
+     * The detached copies handed to the writer by the latest save of each store
+     */
+    private static final ConcurrentHashMap<Class<?>, List<?>> saved =
+            new ConcurrentHashMap<Class<?>, List<?>>();
+
+    /**
+     * Items changed since they were last handed to the writer, by store key. Removed items are
+     * wrapped in {@link Removed}. Only touched on the server thread.
+     */
+    private static final HashMap<Class<?>, LinkedHashMap<String, Object>> dirty =
+            new HashMap<Class<?>, LinkedHashMap<String, Object>>();
+
+    /**
+     * Every this many saves of a store, every item is copied again, not only the marked ones, so a
+     * change made without {@link #markDirty} still reaches storage
+     */
+    private static final int FULL_COPY_INTERVAL = 12;
+
+    private static class Store<T> {
+        private final StorageBackend<T> storage;
+        private final Function<T, String> key;
+
+        /**
+         * The detached copy handed to the writer by the latest save, by the live item it was
+         * taken from
+         */
+        private IdentityHashMap<T, T> copies = new IdentityHashMap<T, T>();
+
+        /**
+         * Live items marked since the latest save, whose copies are stale
+         */
+        private final Set<T> changed = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+        private int saves = 0;
+
+        private Store(StorageBackend<T> storage, Function<T, String> key) {
+            this.storage = storage;
+            this.key = key;
+        }
+    }
+
+    private static class Removed {
+        private final Object item;
+
+        private Removed(Object item) {
+            this.item = item;
+        }
+    }
 
     public static <T, E> HashMap<E, T> load(Class<T> clazz, Function<T, E> getStoreKey) {
-        String name = clazz.getAnnotation(Name.class).value();
-        File file = new File(BASE_PATH, name.toLowerCase() + ".dat");
+        return load(clazz, getStoreKey, null);
+    }
 
-        if (!cache.containsKey(clazz))
-            setup(clazz);
+    /**
+     * @param format The layout of the snapshot file, or null for one compound per record.
+     *        Snapshots in the other layout are still read, and rewritten on the next compaction.
+     */
+    public static <T, E> HashMap<E, T> load(Class<T> clazz, Function<T, E> getStoreKey,
+            @Nullable SnapshotFormat<T> format) {
+        long start = System.nanoTime();
+        String name = clazz.getAnnotation(Name.class).value();
 
-        HashMap<E, T> store = new HashMap<E, T>();
+        Function<T, String> key = item -> String.valueOf(getStoreKey.apply(item));
+        StorageBackend<T> storage = createStorage(clazz, name.toLowerCase(), key, format);
+        stores.put(clazz, new Store<T>(storage, key));
 
-        if (!file.exists()) {
-            if (!BASE_PATH.exists())
-                BASE_PATH.mkdir();
+        Collection<T> items = storage.load();
+        List<T> restored = Backup.read(clazz);
+        if (restored != null) {
             try {
-                file.createNewFile();
-            } catch (IOException e) {
-                FactionsMod.LOGGER.error("Failed to create file ({})", file, e);
+                storage.invalidate();
+                storage.writeAll(restored);
+                items = restored;
+            } catch (IOException | ReflectiveOperationException e) {
+                FactionsMod.LOGGER.error("Failed to restore data ({})", storage.describe(), e);
+                Backup.markFailed();
             }
-            return store;
         }
 
-        try {
-            NbtList list = (NbtList) NbtIo.readCompressed(file).get(KEY);
-            for (T item : deserializeList(clazz, list)) {
-                store.put(getStoreKey.apply(item), item);
-            }
-        } catch (IOException | ReflectiveOperationException e) {
-            FactionsMod.LOGGER.error("Failed to read NBT data ({})", file, e);
+        HashMap<E, T> store = new HashMap<E, T>();
+        for (T item : items) {
+            store.put(getStoreKey.apply(item), item);
         }
 
+        FactionsMod.LOGGER.info("Read {} {} records in {} ms", store.size(), name,
+                (System.nanoTime() - start) / 1_000_000);
         return store;
     }
 
-    private static <T> T deserialize(Class<T> clazz, NbtElement value)
-            throws IOException, ReflectiveOperationException {
-        if (SerializerRegistry.contains(clazz)) {
-            return SerializerRegistry.fromNbtElement(clazz, value);
+    private static <T> StorageBackend<T> createStorage(Class<T> clazz, String name,
+            Function<T, String> key, @Nullable SnapshotFormat<T> format) {
+        SnapshotStorage<T> snapshot = new SnapshotStorage<T>(clazz,
+                new File(BASE_PATH, name + ".dat"), new File(BASE_PATH, name + ".journal"), key,
+                format);
+
+        String backend = FactionsMod.CONFIG.DATABASE.BACKEND;
+        StorageBackend.Provider provider = backends.get(backend);
+        if (provider == null) {
+            FactionsMod.LOGGER.error("Unknown storage backend {}, using {}", backend, NBT);
+            provider = backends.get(NBT);
         }
 
-        NbtCompound compound = (NbtCompound) value;
-        T item = (T) clazz.getDeclaredConstructor().newInstance();
+        return provider.create(clazz, BASE_PATH, name, key, snapshot);
+    }
 
-        HashMap<String, Field> fields = cache.get(clazz);
-        for (Map.Entry<String, Field> entry : fields.entrySet()) {
-            String key = entry.getKey();
-            Field field = entry.getValue();
+    /**
+     * Makes a storage backend available under a name for the {@code database.backend} config
+     * option. Backends have to be registered before the first store is loaded, during mod
+     * initialization.
+     */
+    public static void registerBackend(String name, StorageBackend.Provider provider) {
+        backends.put(name, provider);
+    }
 
-            if (!compound.contains(key))
-                continue;
+    static <T> T deserialize(Class<T> clazz, NbtElement value)
+            throws IOException, ReflectiveOperationException {
+        return Codec.deserialize(clazz, value);
+    }
 
-            Class<?> type = field.getType();
+    /**
+     * Saves a store in two phases. Detached copies of the items are taken on the calling thread,
+     * then the storage persists whatever changed since its last write on the database writer
+     * thread. Only items marked since the previous save are copied again, the others reuse the
+     * copies that save took.
+     */
+    public static <T> void save(Class<T> clazz, List<T> items) {
+        Store<T> store = getStore(clazz);
+        StorageBackend<T> storage = store.storage;
 
-            if (ArrayList.class.isAssignableFrom(type)) {
-                Class<?> genericType = (Class<?>) ((ParameterizedType) field.getGenericType())
-                        .getActualTypeArguments()[0];
-                field.set(item, deserializeList(genericType, (NbtList) compound.get(key)));
-            } else {
-                field.set(item, deserialize(type, compound.get(key)));
+        boolean full = store.saves++ % FULL_COPY_INTERVAL == 0;
+        IdentityHashMap<T, T> copies = new IdentityHashMap<T, T>(items.size());
+        ArrayList<T> snapshot = new ArrayList<T>(items.size());
+        try {
+            for (T item : items) {
+                T copy = full || store.changed.contains(item) ? null : store.copies.get(item);
+                if (copy == null) {
+                    copy = copy(clazz, item);
+                }
+                copies.put(item, copy);
+                snapshot.add(copy);
             }
+        } catch (ReflectiveOperationException e) {
+            FactionsMod.LOGGER.error("Failed to snapshot data ({})", storage.describe(), e);
+            return;
         }
 
-        return item;
+        store.copies = copies;
+        store.changed.clear();
+        dirty.remove(clazz);
+        saved.put(clazz, snapshot);
+        WRITER.submit(clazz, () -> {
+            try {
+                storage.writeAll(snapshot);
+            } catch (IOException | ReflectiveOperationException e) {
+                storage.invalidate();
+                FactionsMod.LOGGER.error("Failed to write data ({})", storage.describe(), e);
+            }
+        }, true);
     }
 
-    private static <T> ArrayList<T> deserializeList(Class<T> clazz, NbtList list)
-            throws IOException, ReflectiveOperationException {
-        ArrayList<T> store = new ArrayList<T>();
-
-        for (int i = 0; i < list.size(); i++) {
-            store.add(deserialize(clazz, list.get(i)));
+    /**
+     * Marks an item as changed, so the next {@link #journal()} writes it without waiting for a
+     * full save
+     */
+    public static <T> void markDirty(Class<T> clazz, T item) {
+        Store<T> store = getStore(clazz);
+        if (store != null) {
+            store.changed.add(item);
+            dirty.computeIfAbsent(clazz, c -> new LinkedHashMap<>()).put(store.key.apply(item),
+                    item);
         }
+    }
 
-        return store;
+    public static <T> void markRemoved(Class<T> clazz, T item) {
+        Store<T> store = getStore(clazz);
+        if (store != null) {
+            dirty.computeIfAbsent(clazz, c -> new LinkedHashMap<>()).put(store.key.apply(item),
+                    new Removed(item));
+        }
     }
 
-    public static <T> void save(Class<T> clazz, List<T> items) {
-        String name = clazz.getAnnotation(Name.class).value();
-        File file = new File(BASE_PATH, name.toLowerCase() + ".dat");
+    /**
+     * Writes every item marked since the last save or journal
+     */
+    public static void journal() {
+        for (Map.Entry<Class<?>, LinkedHashMap<String, Object>> entry : dirty.entrySet()) {
+            journal(entry.getKey(), entry.getValue());
+        }
+        dirty.clear();
+    }
 
-        if (!cache.containsKey(clazz))
-            setup(clazz);
+    private static <T> void journal(Class<T> clazz, LinkedHashMap<String, Object> changes) {
+        StorageBackend<T> storage = getStore(clazz).storage;
 
+        ArrayList<T> upserts = new ArrayList<T>();
+        ArrayList<T> removals = new ArrayList<T>();
         try {
-            NbtCompound fileData = new NbtCompound();
-            fileData.put(KEY, serializeList(clazz, items));
-            NbtIo.writeCompressed(fileData, file);
-        } catch (IOException | ReflectiveOperationException e) {
-            FactionsMod.LOGGER.error("Failed to write NBT data ({})", file, e);
+            for (Object change : changes.values()) {
+                if (change instanceof Removed removed) {
+                    removals.add(copy(clazz, cast(removed.item)));
+                } else {
+                    upserts.add(copy(clazz, cast(change)));
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            FactionsMod.LOGGER.error("Failed to snapshot data ({})", storage.describe(), e);
+            return;
         }
-    }
 
-    private static <T> NbtElement serialize(Class<T> clazz, T item)
-            throws IOException, ReflectiveOperationException {
-        if (SerializerRegistry.contains(clazz)) {
-            return SerializerRegistry.toNbtElement(clazz, item);
-        }
+        WRITER.submit(clazz, () -> {
+            try {
+                storage.writeChanges(upserts, removals);
+            } catch (IOException | ReflectiveOperationException e) {
+                storage.invalidate();
+                FactionsMod.LOGGER.error("Failed to write changes ({})", storage.describe(), e);
+            }
+        }, false);
+    }
 
-        HashMap<String, Field> fields = cache.get(clazz);
-        NbtCompound compound = new NbtCompound();
-        for (Map.Entry<String, Field> entry : fields.entrySet()) {
-            String key = entry.getKey();
-            Field field = entry.getValue();
+    /**
+     * @return The detached copies handed to the writer by the latest save of a store, safe to read
+     *         from any thread
+     */
+    public static <T> List<T> getSaved(Class<T> clazz) {
+        return cast(saved.getOrDefault(clazz, List.of()));
+    }
 
-            Class<?> type = field.getType();
-            Object data = field.get(item);
+    /**
+     * Converts a record to NBT as it is stored, for tools working on records outside a storage
+     */
+    public static <T> NbtCompound toNbt(Class<T> clazz, T item)
+            throws IOException, ReflectiveOperationException {
+        return (NbtCompound) serialize(clazz, item);
+    }
 
-            if (data == null)
-                continue;
+    public static <T> T fromNbt(Class<T> clazz, NbtCompound compound)
+            throws IOException, ReflectiveOperationException {
+        return deserialize(clazz, compound);
+    }
 
-            if (ArrayList.class.isAssignableFrom(type)) {
-                Class<?> genericType = (Class<?>) ((ParameterizedType) field.getGenericType())
-                        .getActualTypeArguments()[0];
-                compound.put(key, serializeList(genericType, cast(data)));
-            } else {
-                compound.put(key, serialize(type, cast(data)));
+    /**
+     * Archives the copies taken by the latest save of every store, see {@link Backup}. Save the
+     * stores first for an up to date backup.
+     *
+     * @return The archive, completed on the database writer thread
+     */
+    public static CompletableFuture<File> backup() {
+        HashMap<Class<?>, List<?>> snapshots = new HashMap<Class<?>, List<?>>(saved);
+        CompletableFuture<File> archive = new CompletableFuture<File>();
+
+        WRITER.submit(Backup.class, () -> {
+            try {
+                archive.complete(Backup.write(snapshots));
+            } catch (IOException | ReflectiveOperationException e) {
+                FactionsMod.LOGGER.error("Failed to write backup", e);
+                archive.completeExceptionally(e);
             }
-        }
+        }, false);
 
-        return compound;
+        return archive;
     }
 
-    private static <T> NbtList serializeList(Class<T> clazz, List<T> items)
-            throws IOException, ReflectiveOperationException {
-        NbtList list = new NbtList();
+    /**
+     * Waits for every pending save to reach disk
+     */
+    public static void flush() {
+        WRITER.awaitIdle();
+    }
 
-        for (T item : items) {
-            list.add(list.size(), serialize(clazz, item));
-        }
+    /**
+     * Waits for every pending save, then releases the files and connections held by storages
+     */
+    public static void close() {
+        flush();
+        SqlStorage.disconnect();
+    }
 
-        return list;
+    /**
+     * A 64 bit FNV-1a hash, used by storages to detect changed data
+     */
+    static long fingerprint(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
-    private static <T> void setup(Class<T> clazz) {
-        HashMap<String, Field> fields = new HashMap<String, Field>();
+    static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-        for (Field field : clazz.getDeclaredFields()) {
-            if (field.isAnnotationPresent(io.icker.factions.database.Field.class)) {
-                field.setAccessible(true);
-                fields.put(field.getAnnotation(io.icker.factions.database.Field.class).value(),
-                        field);
+    static <T> T copy(Class<T> clazz, T item) throws ReflectiveOperationException {
+        return Codec.copy(clazz, item);
+    }
 
-                Class<?> type = field.getType();
-                if (!SerializerRegistry.contains(type)) {
-                    if (ArrayList.class.isAssignableFrom(type)) {
-                        ParameterizedType genericType = (ParameterizedType) field.getGenericType();
-                        setup((Class<?>) genericType.getActualTypeArguments()[0]);
-                    } else {
-                        setup(type);
-                    }
-                }
-            }
-        }
+    static <T> NbtElement serialize(Class<T> clazz, T item)
+            throws IOException, ReflectiveOperationException {
+        return Codec.serialize(clazz, item);
+    }
 
-        cache.put(clazz, fields);
+    private static <T> Store<T> getStore(Class<T> clazz) {
+        return cast(stores.get(clazz));
     }
 
     @SuppressWarnings("unchecked")
@@ -0,0 +1,86 @@
+package io.icker.factions.database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import io.icker.factions.FactionsMod;
+
+/**
+ * Runs database writes on a dedicated thread. Writes for a store run in the order they were
+ * submitted, except that a full save replaces every write of that store still waiting.
+ */
+class DatabaseWriter implements Runnable {
+    private final LinkedHashMap<Class<?>, ArrayList<Runnable>> pending = new LinkedHashMap<>();
+    private boolean writing = false;
+    private Thread thread;
+
+    /**
+     * @param supersedes Whether the task makes every earlier pending write of the store redundant
+     */
+    synchronized void submit(Class<?> clazz, Runnable task, boolean supersedes) {
+        ArrayList<Runnable> tasks = pending.computeIfAbsent(clazz, c -> new ArrayList<>());
+        if (supersedes && !tasks.isEmpty()) {
+            FactionsMod.LOGGER.debug("Coalesced {} pending {} writes", tasks.size(),
+                    clazz.getSimpleName());
+            tasks.clear();
+        }
+        tasks.add(task);
+
+        if (thread == null) {
+            thread = new Thread(this, "Factions Database Writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Blocks until every submitted write has finished
+     */
+    synchronized void awaitIdle() {
+        while (!pending.isEmpty() || writing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            ArrayList<Runnable> tasks;
+            synchronized (this) {
+                while (pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                tasks = new ArrayList<>();
+                for (ArrayList<Runnable> storeTasks : pending.values()) {
+                    tasks.addAll(storeTasks);
+                }
+                pending.clear();
+                writing = true;
+            }
+
+            for (Runnable task : tasks) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    FactionsMod.LOGGER.error("Database write failed", e);
+                }
+            }
+
+            synchronized (this) {
+                writing = false;
+                notifyAll();
+            }
+        }
+    }
+}
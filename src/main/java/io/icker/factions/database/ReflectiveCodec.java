@@ -0,0 +1,144 @@
+package io.icker.factions.database;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+
+/**
+ * Reads, writes and copies one persistent class through reflection on its {@code @Field}
+ * annotations, for classes without a generated codec
+ */
+final class ReflectiveCodec<T> extends Codec<T> {
+    private final Class<T> clazz;
+    private final HashMap<String, Field> fields = new HashMap<String, Field>();
+
+    ReflectiveCodec(Class<T> clazz) {
+        this.clazz = clazz;
+
+        for (Field field : clazz.getDeclaredFields()) {
+            if (field.isAnnotationPresent(io.icker.factions.database.Field.class)) {
+                field.setAccessible(true);
+                fields.put(field.getAnnotation(io.icker.factions.database.Field.class).value(),
+                        field);
+            }
+        }
+    }
+
+    @Override
+    public NbtCompound encode(T item) throws IOException, ReflectiveOperationException {
+        NbtCompound compound = new NbtCompound();
+        for (Map.Entry<String, Field> entry : fields.entrySet()) {
+            String key = entry.getKey();
+            Field field = entry.getValue();
+
+            Class<?> type = field.getType();
+            Object data = field.get(item);
+
+            if (data == null)
+                continue;
+
+            if (ArrayList.class.isAssignableFrom(type)) {
+                compound.put(key, encodeList(getElementType(field), cast(data)));
+            } else {
+                compound.put(key, encodeValue(type, cast(data)));
+            }
+        }
+
+        return compound;
+    }
+
+    @Override
+    public T decode(NbtCompound compound) throws IOException, ReflectiveOperationException {
+        T item = clazz.getDeclaredConstructor().newInstance();
+
+        for (Map.Entry<String, Field> entry : fields.entrySet()) {
+            String key = entry.getKey();
+            Field field = entry.getValue();
+
+            if (!compound.contains(key))
+                continue;
+
+            Class<?> type = field.getType();
+
+            if (ArrayList.class.isAssignableFrom(type)) {
+                field.set(item, decodeList(getElementType(field), (NbtList) compound.get(key)));
+            } else {
+                field.set(item, decodeValue(type, compound.get(key)));
+            }
+        }
+
+        return item;
+    }
+
+    @Override
+    public T copy(T item) throws ReflectiveOperationException {
+        T copy = clazz.getDeclaredConstructor().newInstance();
+
+        for (Field field : fields.values()) {
+            Object data = field.get(item);
+
+            if (data == null) {
+                field.set(copy, null);
+                continue;
+            }
+
+            Class<?> type = field.getType();
+
+            if (ArrayList.class.isAssignableFrom(type)) {
+                field.set(copy, copyList(getElementType(field), cast(data)));
+            } else {
+                field.set(copy, copyValue(type, cast(data)));
+            }
+        }
+
+        return copy;
+    }
+
+    private static Class<?> getElementType(Field field) {
+        return (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+    }
+
+    private static <V> NbtList encodeList(Class<V> clazz, List<V> items)
+            throws IOException, ReflectiveOperationException {
+        NbtList list = new NbtList();
+
+        for (V item : items) {
+            list.add(list.size(), encodeValue(clazz, item));
+        }
+
+        return list;
+    }
+
+    private static <V> ArrayList<V> decodeList(Class<V> clazz, NbtList list)
+            throws IOException, ReflectiveOperationException {
+        ArrayList<V> store = new ArrayList<V>();
+
+        for (int i = 0; i < list.size(); i++) {
+            store.add(decodeValue(clazz, list.get(i)));
+        }
+
+        return store;
+    }
+
+    private static <V> ArrayList<V> copyList(Class<V> clazz, List<V> items)
+            throws ReflectiveOperationException {
+        ArrayList<V> copies = new ArrayList<V>(items.size());
+
+        for (V item : items) {
+            copies.add(copyValue(clazz, item));
+        }
+
+        return copies;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+}
@@ -0,0 +1,213 @@
+package io.icker.factions.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import io.icker.factions.FactionsMod;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.inventory.SimpleInventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.util.collection.DefaultedList;
+
+/**
+ * Keeps faction safes in one file per faction under {@code factions/safes}, apart from the faction
+ * store. A safe is read when it is first used, written only when its contents changed and dropped
+ * from memory once nobody has viewed it for {@code safe.unloadAfterSeconds}. Only used on the
+ * server thread, files are written on the database writer thread.
+ */
+public class SafeStorage {
+    private static final File DIRECTORY = new File(Database.BASE_PATH, "safes");
+    private static final int SIZE = 54;
+    private static final String ITEMS = "Items";
+
+    private static final HashMap<UUID, Safe> LOADED = new HashMap<UUID, Safe>();
+
+    /**
+     * Contents handed to the writer that may not be on disk yet, so a safe unloaded and opened
+     * again in between is not read stale. A deleted safe is an empty compound.
+     */
+    private static final ConcurrentHashMap<UUID, NbtCompound> UNWRITTEN =
+            new ConcurrentHashMap<UUID, NbtCompound>();
+
+    private static class Safe extends SimpleInventory {
+        private int viewers = 0;
+        private boolean changed = false;
+        private long lastViewed = System.currentTimeMillis();
+
+        private Safe() {
+            super(SIZE);
+        }
+
+        @Override
+        public void markDirty() {
+            super.markDirty();
+            changed = true;
+        }
+
+        @Override
+        public void onOpen(PlayerEntity player) {
+            viewers++;
+        }
+
+        @Override
+        public void onClose(PlayerEntity player) {
+            viewers--;
+            lastViewed = System.currentTimeMillis();
+        }
+    }
+
+    public static SimpleInventory get(UUID faction) {
+        Safe safe = LOADED.get(faction);
+        if (safe == null) {
+            safe = read(faction);
+            LOADED.put(faction, safe);
+        }
+        return safe;
+    }
+
+    /**
+     * Empties a safe and deletes its file
+     *
+     * @return The items that were in the safe
+     */
+    public static DefaultedList<ItemStack> clear(UUID faction) {
+        DefaultedList<ItemStack> stacks = ((Safe) get(faction)).stacks;
+        delete(faction);
+        return stacks;
+    }
+
+    public static void delete(UUID faction) {
+        LOADED.remove(faction);
+
+        NbtCompound deleted = new NbtCompound();
+        UNWRITTEN.put(faction, deleted);
+
+        File file = getFile(faction);
+        Database.WRITER.submit(SafeStorage.class, () -> {
+            file.delete();
+            UNWRITTEN.remove(faction, deleted);
+        }, false);
+    }
+
+    /**
+     * Moves a safe that was stored inside its faction record into its own file, unless the faction
+     * already has one. Runs while loading, before any safe is used.
+     *
+     * @return Whether the safe is now stored in its own file
+     */
+    public static boolean migrate(UUID faction, SimpleInventory inventory) {
+        File file = getFile(faction);
+        if (file.exists()) {
+            return true;
+        }
+
+        try {
+            write(file, serialize(inventory));
+            return true;
+        } catch (IOException e) {
+            FactionsMod.LOGGER.error("Failed to move safe into {}", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes every loaded safe whose contents changed since it was last written
+     */
+    public static void save() {
+        for (UUID faction : LOADED.keySet()) {
+            save(faction, LOADED.get(faction));
+        }
+    }
+
+    /**
+     * Writes and unloads every safe nobody has viewed for the configured time
+     */
+    public static void unloadIdle() {
+        if (FactionsMod.CONFIG.SAFE == null)
+            return;
+
+        long cutoff =
+                System.currentTimeMillis() - FactionsMod.CONFIG.SAFE.UNLOAD_AFTER_SECONDS * 1000L;
+
+        Iterator<UUID> iterator = LOADED.keySet().iterator();
+        while (iterator.hasNext()) {
+            UUID faction = iterator.next();
+            Safe safe = LOADED.get(faction);
+            if (safe.viewers <= 0 && safe.lastViewed < cutoff) {
+                save(faction, safe);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void save(UUID faction, Safe safe) {
+        if (!safe.changed) {
+            return;
+        }
+
+        NbtCompound data = serialize(safe);
+        safe.changed = false;
+        UNWRITTEN.put(faction, data);
+
+        File file = getFile(faction);
+        Database.WRITER.submit(SafeStorage.class, () -> {
+            try {
+                write(file, data);
+            } catch (IOException e) {
+                FactionsMod.LOGGER.error("Failed to write safe ({})", file, e);
+            } finally {
+                UNWRITTEN.remove(faction, data);
+            }
+        }, false);
+    }
+
+    private static Safe read(UUID faction) {
+        Safe safe = new Safe();
+        File file = getFile(faction);
+        NbtCompound unwritten = UNWRITTEN.get(faction);
+        if (unwritten == null && !file.exists()) {
+            return safe;
+        }
+
+        try {
+            NbtCompound data = unwritten != null ? unwritten : NbtIo.readCompressed(file);
+            NbtList items = data.getList(ITEMS, NbtElement.COMPOUND_TYPE);
+            SimpleInventory stored =
+                    SerializerRegistry.fromNbtElement(SimpleInventory.class, items);
+            for (int i = 0; i < SIZE; i++) {
+                safe.setStack(i, stored.getStack(i));
+            }
+        } catch (IOException | RuntimeException e) {
+            File corrupt = new File(file.getPath() + ".corrupt");
+            FactionsMod.LOGGER.error("Failed to read safe, moved it to {}", corrupt, e);
+            file.renameTo(corrupt);
+        }
+
+        safe.changed = false;
+        return safe;
+    }
+
+    private static NbtCompound serialize(SimpleInventory inventory) {
+        NbtCompound data = new NbtCompound();
+        data.put(ITEMS, SerializerRegistry.toNbtElement(SimpleInventory.class, inventory));
+        return data;
+    }
+
+    private static void write(File file, NbtCompound data) throws IOException {
+        DIRECTORY.mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        NbtIo.writeCompressed(data, temp);
+        Database.replace(temp, file);
+    }
+
+    private static File getFile(UUID faction) {
+        return new File(DIRECTORY, faction + ".dat");
+    }
+}
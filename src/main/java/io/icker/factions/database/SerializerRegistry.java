@@ -3,6 +3,7 @@ package io.icker.factions.database;
 import java.util.HashMap;
 import java.util.UUID;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import org.apache.commons.lang3.ArrayUtils;
 import io.icker.factions.api.persistents.Relationship.Permissions;
 import io.icker.factions.api.persistents.Relationship.Status;
@@ -33,10 +34,17 @@ public class SerializerRegistry {
     private static class Serializer<T, E extends NbtElement> {
         private final Function<T, E> serializer;
         private final Function<E, T> deserializer;
+        private final UnaryOperator<T> copier;
 
         public Serializer(Function<T, E> serializer, Function<E, T> deserializer) {
+            this(serializer, deserializer, UnaryOperator.identity());
+        }
+
+        public Serializer(Function<T, E> serializer, Function<E, T> deserializer,
+                UnaryOperator<T> copier) {
             this.serializer = serializer;
             this.deserializer = deserializer;
+            this.copier = copier;
         }
 
         @SuppressWarnings("unchecked")
@@ -48,6 +56,11 @@ public class SerializerRegistry {
         public T deserialize(NbtElement value) {
             return deserializer.apply((E) value);
         }
+
+        @SuppressWarnings("unchecked")
+        public T copy(Object value) {
+            return copier.apply((T) value);
+        }
     }
 
     static {
@@ -105,6 +118,15 @@ public class SerializerRegistry {
         return (T) registry.get(clazz).deserialize(value);
     }
 
+    /**
+     * Creates a copy of a value that is safe to read from another thread. Immutable values are
+     * returned as is.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(Class<T> clazz, T value) {
+        return (T) registry.get(clazz).copy(value);
+    }
+
     private static <T extends Enum<T>> Serializer<T, NbtString> createEnumSerializer(
             Class<T> clazz) {
         return new Serializer<T, NbtString>(val -> NbtString.of(val.toString()),
@@ -141,6 +163,14 @@ public class SerializerRegistry {
                 }
             }
 
+            return inventory;
+        }, val -> {
+            SimpleInventory inventory = new SimpleInventory(val.size());
+
+            for (int i = 0; i < val.size(); ++i) {
+                inventory.setStack(i, val.getStack(i).copy());
+            }
+
             return inventory;
         });
     }
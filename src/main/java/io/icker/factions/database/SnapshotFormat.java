@@ -0,0 +1,20 @@
+package io.icker.factions.database;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import net.minecraft.nbt.NbtCompound;
+
+/**
+ * A store specific layout for snapshot files, used instead of the default list of one compound
+ * per record. Journals always hold one compound per record, whatever the snapshot layout.
+ */
+public interface SnapshotFormat<T> {
+    /**
+     * Stored in the snapshot root, a snapshot without it uses the default layout
+     */
+    int getVersion();
+
+    void write(Collection<T> items, NbtCompound root);
+
+    void read(NbtCompound root, Consumer<T> consumer);
+}
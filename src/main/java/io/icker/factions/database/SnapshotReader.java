@@ -0,0 +1,69 @@
+package io.icker.factions.database;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtTagSizeTracker;
+import net.minecraft.nbt.NbtTypes;
+
+/**
+ * Reads a compressed snapshot file one record at a time. Only the compound of the record being
+ * decoded is held in memory, instead of the whole NBT tree next to the objects built from it.
+ * Snapshots in a {@link SnapshotFormat} have no record list and are returned whole as the header.
+ * Also used by the offline data tool, so it must not depend on a running server.
+ */
+public class SnapshotReader {
+    public interface RecordConsumer {
+        void accept(NbtCompound record) throws IOException, ReflectiveOperationException;
+    }
+
+    /**
+     * Passes every compound in the list stored under {@code key} to the consumer, in file order
+     *
+     * @return Every other entry of the root compound
+     */
+    public static NbtCompound read(File file, String key, RecordConsumer consumer)
+            throws IOException, ReflectiveOperationException {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (input.readByte() != NbtElement.COMPOUND_TYPE) {
+                throw new IOException("Root tag must be a compound");
+            }
+            input.readUTF();
+
+            NbtCompound header = new NbtCompound();
+            byte type;
+            while ((type = input.readByte()) != NbtElement.END_TYPE) {
+                String name = input.readUTF();
+
+                if (name.equals(key) && type == NbtElement.LIST_TYPE) {
+                    readList(input, consumer);
+                    continue;
+                }
+
+                header.put(name, NbtTypes.byId(type).read(input, 1, NbtTagSizeTracker.EMPTY));
+            }
+            return header;
+        }
+    }
+
+    private static void readList(DataInput input, RecordConsumer consumer)
+            throws IOException, ReflectiveOperationException {
+        byte type = input.readByte();
+        int size = input.readInt();
+
+        if (size > 0 && type != NbtElement.COMPOUND_TYPE) {
+            throw new IOException("Records must be compounds, found tag type " + type);
+        }
+
+        for (int i = 0; i < size; i++) {
+            consumer.accept(NbtCompound.TYPE.read(input, 2, NbtTagSizeTracker.EMPTY));
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package io.icker.factions.database;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.jetbrains.annotations.Nullable;
+import io.icker.factions.FactionsMod;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+
+/**
+ * Keeps a store in a full snapshot file plus an append-only journal of the changes made since
+ * that snapshot was written. Writes append only changed and removed records to the journal, until
+ * it has grown large enough that a fresh snapshot is cheaper to read back.
+ *
+ * <p>Every snapshot carries a generation number and every journal record is stamped with the
+ * generation it applies to, so records left behind by an interrupted compaction are ignored.
+ */
+class SnapshotStorage<T> implements StorageBackend<T> {
+    private static final String KEY = "CORE";
+    private static final String GENERATION = "Generation";
+    private static final String VERSION = "Version";
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    static final byte UPSERT = 0;
+    static final byte DELETE = 1;
+
+    private final Class<T> clazz;
+    private final File file;
+    private final File journalFile;
+    private final Function<T, String> key;
+    private final SnapshotFormat<T> format;
+
+    /**
+     * Fingerprints of every record as it currently exists on disk, valid once {@link #compacted}
+     */
+    private HashMap<String, Long> persisted = new HashMap<>();
+    private boolean compacted = false;
+    private long generation = 0;
+    private int recordCount = 0;
+    private boolean legacySnapshot = false;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    SnapshotStorage(Class<T> clazz, File file, File journalFile, Function<T, String> key,
+            @Nullable SnapshotFormat<T> format) {
+        this.clazz = clazz;
+        this.file = file;
+        this.journalFile = journalFile;
+        this.key = key;
+        this.format = format;
+    }
+
+    @Override
+    public String describe() {
+        return file.toString();
+    }
+
+    @Override
+    public Collection<T> load() {
+        LinkedHashMap<String, T> items = new LinkedHashMap<String, T>();
+
+        if (!file.exists()) {
+            if (!file.getParentFile().exists())
+                file.getParentFile().mkdir();
+            try {
+                file.createNewFile();
+            } catch (IOException e) {
+                FactionsMod.LOGGER.error("Failed to create file ({})", file, e);
+            }
+        } else if (file.length() > 0) {
+            try {
+                NbtCompound header = SnapshotReader.read(file, KEY, record -> {
+                    T item = Database.deserialize(clazz, record);
+                    items.put(key.apply(item), item);
+                });
+                generation = header.getLong(GENERATION);
+
+                if (header.contains(VERSION)) {
+                    if (format == null || header.getInt(VERSION) != format.getVersion()) {
+                        throw new IOException(
+                                "Unsupported snapshot version " + header.getInt(VERSION));
+                    }
+                    format.read(header, item -> items.put(key.apply(item), item));
+                } else if (format != null) {
+                    FactionsMod.LOGGER.info("Migrating {} to snapshot version {} on next save",
+                            file, format.getVersion());
+                    legacySnapshot = true;
+                }
+            } catch (IOException | ReflectiveOperationException e) {
+                FactionsMod.LOGGER.error("Failed to read NBT data ({})", file, e);
+            }
+        }
+
+        replay(items);
+        return items.values();
+    }
+
+    /**
+     * Applies the journal records of the current generation on top of the loaded snapshot. A
+     * damaged tail, left by a crash during an append, is cut off so later appends stay readable.
+     */
+    private void replay(Map<String, T> items) {
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(journalFile.toPath());
+        } catch (IOException e) {
+            FactionsMod.LOGGER.error("Failed to read journal ({})", journalFile, e);
+            return;
+        }
+
+        ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+        DataInputStream input = new DataInputStream(stream);
+        int records = 0;
+        int replayed = 0;
+        int end = 0;
+
+        try {
+            while (stream.available() > 0) {
+                NbtCompound record = NbtIo.read(input);
+                records++;
+
+                if (record.getLong("Gen") == generation) {
+                    String recordKey = record.getString("Key");
+                    if (record.getByte("Op") == DELETE) {
+                        items.remove(recordKey);
+                    } else {
+                        items.put(recordKey,
+                                Database.deserialize(clazz, record.getCompound("Data")));
+                    }
+                    replayed++;
+                }
+
+                end = bytes.length - stream.available();
+            }
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            FactionsMod.LOGGER.warn("Discarding damaged journal tail after {} records ({})",
+                    records, journalFile, e);
+            try (FileChannel channel =
+                    FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            } catch (IOException truncateException) {
+                FactionsMod.LOGGER.error("Failed to truncate journal ({})", journalFile,
+                        truncateException);
+            }
+        }
+
+        recordCount = records;
+        if (replayed > 0) {
+            FactionsMod.LOGGER.info("Replayed {} journal records ({})", replayed, journalFile);
+        }
+    }
+
+    @Override
+    public void writeAll(List<T> items) throws IOException, ReflectiveOperationException {
+        LinkedHashMap<String, NbtCompound> records =
+                new LinkedHashMap<String, NbtCompound>(items.size());
+        HashMap<String, Long> fingerprints = new HashMap<String, Long>(items.size());
+        for (T item : items) {
+            String itemKey = key.apply(item);
+            NbtCompound data = (NbtCompound) Database.serialize(clazz, item);
+            records.put(itemKey, data);
+            fingerprints.put(itemKey, fingerprint(data));
+        }
+
+        if (!compacted) {
+            compact(items, records.values(), fingerprints);
+            return;
+        }
+
+        ArrayList<NbtCompound> changes = new ArrayList<NbtCompound>();
+        for (Map.Entry<String, NbtCompound> entry : records.entrySet()) {
+            Long previous = persisted.get(entry.getKey());
+            if (!fingerprints.get(entry.getKey()).equals(previous)) {
+                changes.add(upsert(entry.getKey(), entry.getValue()));
+            }
+        }
+        for (String persistedKey : persisted.keySet()) {
+            if (!records.containsKey(persistedKey)) {
+                changes.add(delete(persistedKey));
+            }
+        }
+
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        if (recordCount + changes.size() > Math.max(MIN_COMPACTION_RECORDS, records.size() / 2)) {
+            compact(items, records.values(), fingerprints);
+        } else {
+            append(changes);
+            persisted = fingerprints;
+        }
+    }
+
+    @Override
+    public void writeChanges(List<T> upserts, List<T> removals)
+            throws IOException, ReflectiveOperationException {
+        ArrayList<NbtCompound> records =
+                new ArrayList<NbtCompound>(upserts.size() + removals.size());
+
+        for (T item : removals) {
+            String itemKey = key.apply(item);
+            if (persisted.remove(itemKey) != null || !compacted) {
+                records.add(delete(itemKey));
+            }
+        }
+
+        for (T item : upserts) {
+            String itemKey = key.apply(item);
+            NbtCompound data = (NbtCompound) Database.serialize(clazz, item);
+            Long fingerprint = fingerprint(data);
+            if (!fingerprint.equals(persisted.put(itemKey, fingerprint)) || !compacted) {
+                records.add(upsert(itemKey, data));
+            }
+        }
+
+        append(records);
+    }
+
+    @Override
+    public void invalidate() {
+        compacted = false;
+    }
+
+    private NbtCompound upsert(String recordKey, NbtCompound data) {
+        NbtCompound record = new NbtCompound();
+        record.putLong("Gen", generation);
+        record.putByte("Op", UPSERT);
+        record.putString("Key", recordKey);
+        record.put("Data", data);
+        return record;
+    }
+
+    private NbtCompound delete(String recordKey) {
+        NbtCompound record = new NbtCompound();
+        record.putLong("Gen", generation);
+        record.putByte("Op", DELETE);
+        record.putString("Key", recordKey);
+        return record;
+    }
+
+    /**
+     * A 64 bit FNV-1a hash of the binary form of a record, used to detect changed records
+     */
+    private long fingerprint(NbtCompound data) throws IOException {
+        buffer.reset();
+        NbtIo.write(data, new DataOutputStream(buffer));
+        return Database.fingerprint(buffer.toByteArray());
+    }
+
+    /**
+     * Appends records to the journal and forces them to disk
+     */
+    private void append(List<NbtCompound> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        try (FileOutputStream stream = new FileOutputStream(journalFile, true)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+            for (NbtCompound record : records) {
+                NbtIo.write(record, output);
+            }
+            output.flush();
+            stream.getChannel().force(false);
+        }
+
+        recordCount += records.size();
+    }
+
+    /**
+     * Writes a full snapshot of the next generation, which makes the current journal obsolete
+     */
+    private void compact(List<T> items, Collection<NbtCompound> records,
+            HashMap<String, Long> fingerprints) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+
+        NbtCompound fileData = new NbtCompound();
+        fileData.putLong(GENERATION, generation + 1);
+
+        if (format != null) {
+            fileData.putInt(VERSION, format.getVersion());
+            format.write(items, fileData);
+        } else {
+            NbtList list = new NbtList();
+            for (NbtCompound record : records) {
+                list.add(list.size(), record);
+            }
+            fileData.put(KEY, list);
+        }
+
+        NbtIo.writeCompressed(fileData, temp);
+
+        if (legacySnapshot) {
+            File legacy = new File(file.getPath() + ".legacy");
+            Files.copy(file.toPath(), legacy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            FactionsMod.LOGGER.info("Kept the previous snapshot as {}", legacy);
+        }
+        Database.replace(temp, file);
+
+        generation++;
+        journalFile.delete();
+        recordCount = 0;
+        legacySnapshot = false;
+        persisted = fingerprints;
+        compacted = true;
+    }
+}
@@ -0,0 +1,290 @@
+package io.icker.factions.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import io.icker.factions.FactionsMod;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+
+/**
+ * Keeps a store as one row per item in an embedded SQLite database, with the item in its binary
+ * NBT form. Writes only touch the rows of changed and removed items, in batched statements inside
+ * one transaction.
+ *
+ * <p>When the table is empty, items are read from the snapshot storage instead and written to the
+ * table on the first full save.
+ */
+class SqlStorage<T> implements StorageBackend<T> {
+    static final StorageBackend.Provider PROVIDER = new StorageBackend.Provider() {
+        @Override
+        public <T> StorageBackend<T> create(Class<T> clazz, File directory, String name,
+                Function<T, String> key, StorageBackend<T> snapshot) {
+            return new SqlStorage<T>(clazz, new File(directory, "factions.db"), name, key,
+                    snapshot);
+        }
+    };
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static Connection connection;
+
+    private final Class<T> clazz;
+    private final File file;
+    private final String table;
+    private final Function<T, String> key;
+    private final StorageBackend<T> migrationSource;
+
+    /**
+     * Fingerprints of every row as it currently exists in the table, valid once {@link #complete}
+     */
+    private HashMap<String, Long> persisted = new HashMap<>();
+    private boolean complete = false;
+    private boolean migrating = false;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    SqlStorage(Class<T> clazz, File file, String table, Function<T, String> key,
+            StorageBackend<T> migrationSource) {
+        this.clazz = clazz;
+        this.file = file;
+        this.table = '"' + table + '"';
+        this.key = key;
+        this.migrationSource = migrationSource;
+    }
+
+    @Override
+    public String describe() {
+        return file + " " + table;
+    }
+
+    @Override
+    public Collection<T> load() {
+        ArrayList<T> items = new ArrayList<T>();
+        int rows = 0;
+
+        try {
+            Connection connection = connect(file);
+            synchronized (connection) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE IF NOT EXISTS " + table
+                            + " (key TEXT PRIMARY KEY NOT NULL, data BLOB NOT NULL)");
+                    connection.commit();
+
+                    ResultSet result = statement.executeQuery("SELECT key, data FROM " + table);
+                    while (result.next()) {
+                        rows++;
+                        String itemKey = result.getString(1);
+                        byte[] data = result.getBytes(2);
+                        try {
+                            items.add(decode(data));
+                            persisted.put(itemKey, Database.fingerprint(data));
+                        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+                            FactionsMod.LOGGER.error("Failed to read row {} ({})", itemKey,
+                                    describe(), e);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            FactionsMod.LOGGER.error("Failed to read table ({})", describe(), e);
+            return items;
+        }
+
+        if (rows == 0) {
+            Collection<T> migrated = migrationSource.load();
+            if (!migrated.isEmpty()) {
+                FactionsMod.LOGGER.info("Moving {} records from {} into {} on next save",
+                        migrated.size(), migrationSource.describe(), describe());
+                migrating = true;
+                return migrated;
+            }
+        }
+
+        complete = true;
+        return items;
+    }
+
+    @Override
+    public void writeAll(List<T> items) throws IOException, ReflectiveOperationException {
+        LinkedHashMap<String, byte[]> upserts = new LinkedHashMap<String, byte[]>();
+        HashMap<String, Long> fingerprints = new HashMap<String, Long>(items.size());
+        for (T item : items) {
+            String itemKey = key.apply(item);
+            byte[] data = encode(item);
+            Long fingerprint = Database.fingerprint(data);
+            fingerprints.put(itemKey, fingerprint);
+
+            if (!complete || !fingerprint.equals(persisted.get(itemKey))) {
+                upserts.put(itemKey, data);
+            }
+        }
+
+        ArrayList<String> deletes = new ArrayList<String>();
+        if (complete) {
+            for (String persistedKey : persisted.keySet()) {
+                if (!fingerprints.containsKey(persistedKey)) {
+                    deletes.add(persistedKey);
+                }
+            }
+        }
+
+        write(upserts, deletes, !complete);
+        persisted = fingerprints;
+        complete = true;
+        migrating = false;
+    }
+
+    @Override
+    public void writeChanges(List<T> upserts, List<T> removals)
+            throws IOException, ReflectiveOperationException {
+        if (migrating) {
+            migrationSource.writeChanges(upserts, removals);
+            return;
+        }
+
+        ArrayList<String> deletes = new ArrayList<String>(removals.size());
+        for (T item : removals) {
+            String itemKey = key.apply(item);
+            persisted.remove(itemKey);
+            deletes.add(itemKey);
+        }
+
+        LinkedHashMap<String, byte[]> changed = new LinkedHashMap<String, byte[]>();
+        for (T item : upserts) {
+            String itemKey = key.apply(item);
+            byte[] data = encode(item);
+            Long fingerprint = Database.fingerprint(data);
+            if (!fingerprint.equals(persisted.put(itemKey, fingerprint)) || !complete) {
+                changed.put(itemKey, data);
+            }
+        }
+
+        write(changed, deletes, false);
+    }
+
+    @Override
+    public void invalidate() {
+        complete = false;
+    }
+
+    /**
+     * Applies upserts and deletes in one transaction
+     *
+     * @param clear Whether to delete every existing row first
+     */
+    private void write(Map<String, byte[]> upserts, List<String> deletes, boolean clear)
+            throws IOException {
+        if (upserts.isEmpty() && deletes.isEmpty() && !clear) {
+            return;
+        }
+
+        try {
+            Connection connection = connect(file);
+            synchronized (connection) {
+                try {
+                    if (clear) {
+                        try (Statement statement = connection.createStatement()) {
+                            statement.executeUpdate("DELETE FROM " + table);
+                        }
+                    }
+
+                    try (PreparedStatement statement = connection
+                            .prepareStatement("DELETE FROM " + table + " WHERE key = ?")) {
+                        int batched = 0;
+                        for (String itemKey : deletes) {
+                            statement.setString(1, itemKey);
+                            statement.addBatch();
+                            if (++batched % BATCH_SIZE == 0) {
+                                statement.executeBatch();
+                            }
+                        }
+                        statement.executeBatch();
+                    }
+
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            "INSERT OR REPLACE INTO " + table + " (key, data) VALUES (?, ?)")) {
+                        int batched = 0;
+                        for (Map.Entry<String, byte[]> entry : upserts.entrySet()) {
+                            statement.setString(1, entry.getKey());
+                            statement.setBytes(2, entry.getValue());
+                            statement.addBatch();
+                            if (++batched % BATCH_SIZE == 0) {
+                                statement.executeBatch();
+                            }
+                        }
+                        statement.executeBatch();
+                    }
+
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to write table " + table, e);
+        }
+    }
+
+    private byte[] encode(T item) throws IOException, ReflectiveOperationException {
+        buffer.reset();
+        NbtIo.write((NbtCompound) Database.serialize(clazz, item), new DataOutputStream(buffer));
+        return buffer.toByteArray();
+    }
+
+    private T decode(byte[] data) throws IOException, ReflectiveOperationException {
+        return Database.deserialize(clazz,
+                NbtIo.read(new DataInputStream(new ByteArrayInputStream(data))));
+    }
+
+    /**
+     * Closes the shared connection, which checkpoints the write-ahead log. The next use opens it
+     * again, as when an integrated server is started twice in one session.
+     */
+    static synchronized void disconnect() {
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            FactionsMod.LOGGER.error("Failed to close the factions database", e);
+        }
+        connection = null;
+    }
+
+    /**
+     * Returns the connection shared by every table, opening it on first use. Statements of one
+     * transaction hold the connection's lock, as loads and writes run on different threads.
+     */
+    private static synchronized Connection connect(File file) throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            file.getParentFile().mkdirs();
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode = WAL");
+                statement.execute("PRAGMA synchronous = NORMAL");
+            }
+            connection.setAutoCommit(false);
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,54 @@
+package io.icker.factions.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Where the items of one store are kept. {@link #load()} runs on the server thread before the
+ * first write, every write runs on the database writer thread and receives detached copies.
+ *
+ * <p>Backends are created by a {@link Provider} registered with
+ * {@link Database#registerBackend(String, Provider)} and picked by name in the config.
+ */
+public interface StorageBackend<T> {
+    /**
+     * Reads every stored item. Unreadable data is logged and skipped.
+     */
+    Collection<T> load();
+
+    /**
+     * Persists the complete contents of the store
+     */
+    void writeAll(List<T> items) throws IOException, ReflectiveOperationException;
+
+    /**
+     * Persists changed and removed items. An item appears in at most one of the lists.
+     */
+    void writeChanges(List<T> upserts, List<T> removals)
+            throws IOException, ReflectiveOperationException;
+
+    /**
+     * Forgets what is known about the persisted state after a failed write, so the next
+     * {@link #writeAll(List)} rewrites everything
+     */
+    void invalidate();
+
+    /**
+     * Names the storage in log messages
+     */
+    String describe();
+
+    interface Provider {
+        /**
+         * @param directory The directory holding every factions data file
+         * @param name The lower case name of the store
+         * @param key The unique key of an item
+         * @param snapshot The default NBT storage of the store, to migrate existing data from
+         */
+        <T> StorageBackend<T> create(Class<T> clazz, File directory, String name,
+                Function<T, String> key, StorageBackend<T> snapshot);
+    }
+}
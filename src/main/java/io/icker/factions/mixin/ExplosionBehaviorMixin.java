@@ -1,45 +1,53 @@
 package io.icker.factions.mixin;
 
-// import io.icker.factions.api.events.PlayerEvents;
-// import net.minecraft.block.BlockState;
-// import net.minecraft.entity.Entity;
-// import net.minecraft.util.ActionResult;
-// import net.minecraft.util.math.BlockPos;
-// import net.minecraft.world.BlockView;
-// import net.minecraft.world.explosion.Explosion;
-// import net.minecraft.world.explosion.ExplosionBehavior;
+import io.icker.factions.api.events.PlayerEvents;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.ActionResult;
+import net.minecraft.world.World;
+import net.minecraft.world.explosion.Explosion;
 
-// import org.spongepowered.asm.mixin.Mixin;
-// import org.spongepowered.asm.mixin.injection.At;
-// import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
-// @Mixin(Explosion.class)
-// public class ExplosionBehaviorMixin {
-//     @Redirect(
-//             method = "getBlocksToDestroy",
-//             at = @At(value = "INVOKE", target = "Lnet/minecraft/world/explosion/ExplosionBehavior;canDestroyBlock(Lnet/minecraft/world/explosion/Explosion;Lnet/minecraft/world/BlockView;Lnet/minecraft/util/math/BlockPos;Lnet/minecraft/block/BlockState;F)Z"))
-//     public boolean canDestroyBlock(ExplosionBehavior behavior, Explosion explosion, BlockView world, BlockPos pos, BlockState state, float power) {
-//         ActionResult result = PlayerEvents.EXPLODE_BLOCK.invoker().onExplodeBlock(explosion, world, pos, state);
-//         if (result.isAccepted()) {
-//             return true;
-//         } else if (result == ActionResult.FAIL) {
-//             return false;
-//         }
+@Mixin(Explosion.class)
+public class ExplosionBehaviorMixin {
+    @Shadow
+    @Final
+    private World world;
 
-//         return behavior.canDestroyBlock(explosion, world, pos, state, power);
-//     }
+    /**
+     * Filters the blocks of the whole explosion at once, before any is destroyed and before the
+     * list is sent to clients
+     */
+    @Inject(method = "affectBlocks", at = @At("HEAD"))
+    private void filterAffectedBlocks(boolean particles, CallbackInfo info) {
+        Explosion explosion = (Explosion) (Object) this;
+        if (!world.isClient && !explosion.getAffectedBlocks().isEmpty()) {
+            PlayerEvents.EXPLODE_BLOCKS.invoker().onExplodeBlocks(explosion, world,
+                    explosion.getAffectedBlocks());
+        }
+    }
 
-//     @Redirect(
-//             method = "damageEntities",
-//             at = @At(value = "INVOKE", target = "Lnet/minecraft/entity/Entity;isImmuneToExplosion(Lnet/minecraft/world/explosion/Explosion;)Z"))
-//     public boolean shouldDamage(Entity entity, Explosion explosion) {
-//         ActionResult result = PlayerEvents.EXPLODE_DAMAGE.invoker().onExplodeDamage(explosion, entity);
-//         if (result.isAccepted()) {
-//             return false;
-//         } else if (result == ActionResult.FAIL) {
-//             return true;
-//         }
+    @Redirect(method = "collectBlocksAndDamageEntities", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/entity/Entity;isImmuneToExplosion()Z"))
+    private boolean isImmuneToExplosion(Entity entity) {
+        if (world.isClient) {
+            return entity.isImmuneToExplosion();
+        }
 
-//         return entity.isImmuneToExplosion();
-//     }
-// }
+        ActionResult result = PlayerEvents.EXPLODE_DAMAGE.invoker()
+                .onExplodeDamage((Explosion) (Object) this, entity);
+        if (result.isAccepted()) {
+            return false;
+        } else if (result == ActionResult.FAIL) {
+            return true;
+        }
+
+        return entity.isImmuneToExplosion();
+    }
+}
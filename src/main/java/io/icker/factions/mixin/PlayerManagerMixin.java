@@ -4,6 +4,7 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Redirect;
 import io.icker.factions.api.persistents.User;
+import io.icker.factions.core.Session;
 import io.icker.factions.util.StyledChatCompatibility;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.network.message.MessageType;
@@ -34,14 +35,15 @@ public class PlayerManagerMixin {
             sender = User.get(((SentMessage.Chat) message).message().link().sender());
         }
 
-        User target = User.get(player.getUuid());
+        Session targetSession = Session.get(player);
+        User target = targetSession.getUser();
 
         if (sender.chat == User.ChatMode.GLOBAL && target.chat != User.ChatMode.FOCUS) {
             player.sendChatMessage(message, bl, parameters);
         }
 
         if ((sender.chat == User.ChatMode.FACTION || sender.chat == User.ChatMode.FOCUS)
-                && sender.getFaction().equals(target.getFaction())) {
+                && sender.getFaction().equals(targetSession.getFaction())) {
             player.sendChatMessage(message, bl, parameters);
         }
     }
@@ -1,6 +1,7 @@
 package io.icker.factions.mixin;
 
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -9,6 +10,7 @@ import io.icker.factions.FactionsMod;
 import io.icker.factions.api.events.PlayerEvents;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
+import io.icker.factions.core.Session;
 import io.icker.factions.util.Message;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
@@ -22,12 +24,24 @@ import net.minecraft.util.Formatting;
 import net.minecraft.world.World;
 
 @Mixin(ServerPlayerEntity.class)
-public abstract class ServerPlayerEntityMixin extends LivingEntity {
+public abstract class ServerPlayerEntityMixin extends LivingEntity implements Session.Holder {
+    @Unique
+    private Session factions$session;
 
     protected ServerPlayerEntityMixin(EntityType<? extends LivingEntity> entityType, World world) {
         super(entityType, world);
     }
 
+    @Override
+    public Session factions$getSession() {
+        return factions$session;
+    }
+
+    @Override
+    public void factions$setSession(Session session) {
+        factions$session = session;
+    }
+
     @Inject(at = @At("HEAD"), method = "setClientSettings")
     public void setClientSettings(ClientSettingsC2SPacket packet, CallbackInfo info) {
         User member = User.get(((ServerPlayerEntity) (Object) this).getUuid());
@@ -68,9 +82,9 @@ public abstract class ServerPlayerEntityMixin extends LivingEntity {
     @Inject(method = "getPlayerListName", at = @At("HEAD"), cancellable = true)
     public void getPlayerListName(CallbackInfoReturnable<Text> cir) {
         if (FactionsMod.CONFIG.DISPLAY.TAB_MENU) {
-            User member = User.get(((ServerPlayerEntity) (Object) this).getUuid());
-            if (member.isInFaction()) {
-                Faction faction = member.getFaction();
+            Session session = Session.get((ServerPlayerEntity) (Object) this);
+            if (session.getUser().isInFaction()) {
+                Faction faction = session.getFaction();
                 cir.setReturnValue(new Message(String.format("[%s] ", faction.getName()))
                         .format(faction.getColor())
                         .add(new Message(((ServerPlayerEntity) (Object) this).getName().getString())
@@ -68,6 +68,10 @@ public class BlueMapWrapper {
         FactionEvents.DISBAND.register((faction) -> generateMarkers());
     }
 
+    public void reloadAll() {
+        generateMarkers();
+    }
+
     private void generateMarkers() {
         if (!WorldUtils.isReady()) {
             loadWhenReady = true;
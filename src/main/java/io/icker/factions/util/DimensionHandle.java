@@ -0,0 +1,104 @@
+package io.icker.factions.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.Nullable;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.World;
+
+/**
+ * An interned reference to a dimension. Each dimension id maps to exactly one handle, so handles
+ * can be compared by identity and used to index per-dimension data without building strings.
+ *
+ * <p>Handles of the loaded worlds are bound to their {@link ServerWorld} once the server has
+ * started, a handle of a dimension the server does not have stays unbound.
+ */
+public final class DimensionHandle {
+    private static final ConcurrentHashMap<String, DimensionHandle> BY_ID =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<RegistryKey<World>, DimensionHandle> BY_KEY =
+            new ConcurrentHashMap<>();
+
+    private static int nextIndex = 0;
+
+    private final String id;
+    private final int index;
+    @Nullable
+    private volatile ServerWorld world;
+
+    private DimensionHandle(String id, int index) {
+        this.id = id;
+        this.index = index;
+    }
+
+    public static DimensionHandle of(String id) {
+        DimensionHandle handle = BY_ID.get(id);
+        if (handle != null) {
+            return handle;
+        }
+        return BY_ID.computeIfAbsent(id, DimensionHandle::create);
+    }
+
+    public static DimensionHandle of(RegistryKey<World> key) {
+        DimensionHandle handle = BY_KEY.get(key);
+        if (handle != null) {
+            return handle;
+        }
+        return BY_KEY.computeIfAbsent(key, k -> of(k.getValue().toString()));
+    }
+
+    public static DimensionHandle of(World world) {
+        return of(world.getRegistryKey());
+    }
+
+    /**
+     * Binds the handle of every loaded world, once the worlds exist
+     */
+    public static void bind(MinecraftServer server) {
+        for (ServerWorld world : server.getWorlds()) {
+            of(world).world = world;
+        }
+    }
+
+    public static void unbind() {
+        for (DimensionHandle handle : BY_ID.values()) {
+            handle.world = null;
+        }
+    }
+
+    private static synchronized DimensionHandle create(String id) {
+        return new DimensionHandle(id, nextIndex++);
+    }
+
+    /**
+     * @return The dimension id, for example {@code minecraft:overworld}
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The loaded world of this dimension, or null if the server does not have it
+     */
+    @Nullable
+    public ServerWorld getWorld() {
+        return world;
+    }
+
+    public boolean isValid() {
+        return world != null;
+    }
+
+    /**
+     * @return A small dense index unique to this dimension, suitable for array lookups
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
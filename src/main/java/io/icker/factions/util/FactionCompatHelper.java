@@ -3,14 +3,13 @@ package io.icker.factions.util;
 import io.icker.factions.api.compat.compatSkillDamageProtectionfor;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.Relationship;
-import io.icker.factions.api.persistents.User;
+import io.icker.factions.core.Session;
 import net.minecraft.server.network.ServerPlayerEntity;
 
 public class FactionCompatHelper {
 
     public static Faction getFaction(ServerPlayerEntity player) {
-        User user = User.get(player.getUuid());
-        return user != null ? user.getFaction() : null;
+        return Session.get(player).getFaction();
     }
 
     // public static boolean areFactionsEnemies(ServerPlayerEntity p1, ServerPlayerEntity p2) {
@@ -71,29 +70,22 @@ public class FactionCompatHelper {
             return isDamageAllowed(Relationship.Status.NEUTRAL, level);
         }
 
-        Relationship r1 = f1.getRelationship(f2.getID());
-        Relationship r2 = f2.getRelationship(f1.getID());
-
-        Relationship.Status relationStatus = getWorstRelation(r1, r2);
+        Relationship.Status relationStatus =
+                getWorstRelation(f1.getStatus(f2.getID()), f2.getStatus(f1.getID()));
 
         return isDamageAllowed(relationStatus, level);
     }
 
-    private static Relationship.Status getWorstRelation(Relationship r1, Relationship r2) {
-        boolean r1Enemy = r1 != null && r1.status == Relationship.Status.WAR;
-        boolean r2Enemy = r2 != null && r2.status == Relationship.Status.WAR;
-
-        if (r1Enemy || r2Enemy) return Relationship.Status.WAR;
-
-        boolean r1Neutral = r1 == null || r1.status == Relationship.Status.NEUTRAL;
-        boolean r2Neutral = r2 == null || r2.status == Relationship.Status.NEUTRAL;
-
-        if (r1Neutral || r2Neutral) return Relationship.Status.NEUTRAL;
+    private static Relationship.Status getWorstRelation(Relationship.Status s1,
+            Relationship.Status s2) {
+        if (s1 == Relationship.Status.WAR || s2 == Relationship.Status.WAR)
+            return Relationship.Status.WAR;
 
-        boolean r1Friendly = r1 != null && r1.status == Relationship.Status.FRIENDLY;
-        boolean r2Friendly = r2 != null && r2.status == Relationship.Status.FRIENDLY;
+        if (s1 == Relationship.Status.NEUTRAL || s2 == Relationship.Status.NEUTRAL)
+            return Relationship.Status.NEUTRAL;
 
-        if (r1Friendly || r2Friendly) return Relationship.Status.FRIENDLY;
+        if (s1 == Relationship.Status.FRIENDLY || s2 == Relationship.Status.FRIENDLY)
+            return Relationship.Status.FRIENDLY;
 
         return Relationship.Status.ALLY;
     }
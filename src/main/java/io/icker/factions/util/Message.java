@@ -66,10 +66,8 @@ public class Message {
 
     public Message send(Faction faction) {
         Message message = this.prependFaction(faction);
-        for (User member : faction.getUsers()) {
-            ServerPlayerEntity player = manager.getPlayer(member.getID());
-            if (player != null)
-                message.send(player, false);
+        for (ServerPlayerEntity player : faction.getOnlineMembers()) {
+            message.send(player, false);
         }
         return this;
     }
@@ -83,8 +81,7 @@ public class Message {
     }
 
     public void sendToFactionChat(Faction faction) {
-        for (User member : faction.getUsers()) {
-            ServerPlayerEntity player = manager.getPlayer(member.getID());
+        for (ServerPlayerEntity player : faction.getOnlineMembers()) {
             player.sendMessage(text, false);
         }
     }
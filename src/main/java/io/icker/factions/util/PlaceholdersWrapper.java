@@ -6,6 +6,7 @@ import eu.pb4.placeholders.api.Placeholders;
 import io.icker.factions.FactionsMod;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
+import io.icker.factions.core.Session;
 import net.minecraft.text.Style;
 import net.minecraft.text.Text;
 import net.minecraft.text.TextColor;
@@ -22,7 +23,7 @@ public class PlaceholdersWrapper {
             if (!ctx.hasPlayer())
                 return PlaceholderResult.invalid("No player found");
 
-            User member = User.get(ctx.player().getUuid());
+            User member = Session.get(ctx.player()).getUser();
             return PlaceholderResult.value(handler.apply(member));
         });
     }
@@ -58,6 +58,10 @@ public class SquareMapWrapper {
         FactionEvents.DISBAND.register((faction) -> generateMarkers());
     }
 
+    public void reloadAll() {
+        generateMarkers();
+    }
+
     private void generateMarkers() {
         for (SimpleLayerProvider layer : layers.values()) {
             for (Key id : layer.registeredMarkers().keySet()) {
@@ -3,17 +3,11 @@ package io.icker.factions.util;
 import net.fabricmc.fabric.api.event.Event;
 import net.fabricmc.fabric.api.event.EventFactory;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
-import net.minecraft.registry.RegistryKey;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.world.ServerWorld;
-import net.minecraft.util.Identifier;
-import net.minecraft.world.World;
 
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Objects;
-import java.util.Optional;
-
 public class WorldUtils {
     public static MinecraftServer server;
 
@@ -29,6 +23,8 @@ public class WorldUtils {
             WorldUtils.server = server1;
             ON_READY.invoker().onReady();
         });
+        ServerLifecycleEvents.SERVER_STARTED.register(DimensionHandle::bind);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server1 -> DimensionHandle.unbind());
     }
 
     public static boolean isReady() {
@@ -40,21 +36,12 @@ public class WorldUtils {
     }
 
     public static boolean isValid(String level) {
-        return WorldUtils.server.getWorldRegistryKeys().stream()
-                .anyMatch(key -> Objects.equals(key.getValue(), new Identifier(level)));
+        return DimensionHandle.of(level).isValid();
     }
 
     @Nullable
     public static ServerWorld getWorld(String level) {
-        Optional<RegistryKey<World>> key = WorldUtils.server.getWorldRegistryKeys().stream()
-                .filter(testKey -> Objects.equals(testKey.getValue(), new Identifier(level)))
-                .findAny();
-
-        if (key.isEmpty()) {
-            return null;
-        } else {
-            return server.getWorld(key.get());
-        }
+        return DimensionHandle.of(level).getWorld();
     }
 
     @FunctionalInterface
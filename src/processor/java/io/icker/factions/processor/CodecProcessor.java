@@ -0,0 +1,522 @@
+package io.icker.factions.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@code <ClassName>Codec} for every class with {@code @Field} annotations, which
+ * reads and writes the annotated fields directly instead of through reflection. Public and
+ * package-private fields are accessed directly, private fields through {@code VarHandle}s with
+ * exact types so primitives are never boxed.
+ *
+ * <p>Classes the generator cannot handle are skipped with a note and keep using reflection.
+ */
+@SupportedAnnotationTypes(CodecProcessor.FIELD)
+public class CodecProcessor extends AbstractProcessor {
+    static final String FIELD = "io.icker.factions.database.Field";
+    private static final String CODEC = "io.icker.factions.database.Codec";
+    private static final String NBT = "net.minecraft.nbt.";
+
+    private enum Kind {
+        PRIMITIVE, STRING, UUID, ENUM, LIST, CODEC, OTHER
+    }
+
+    private record Property(VariableElement element, String key, boolean direct) {
+        String name() {
+            return element.getSimpleName().toString();
+        }
+
+        String handle() {
+            return "FIELD_" + name().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase();
+        }
+    }
+
+    private final HashMap<TypeElement, Boolean> eligible = new HashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        TypeElement field = processingEnv.getElementUtils().getTypeElement(FIELD);
+        if (field == null) {
+            return false;
+        }
+
+        LinkedHashSet<TypeElement> types = new LinkedHashSet<>();
+        for (Element element : round.getElementsAnnotatedWith(field)) {
+            types.add((TypeElement) element.getEnclosingElement());
+        }
+
+        for (TypeElement type : types) {
+            if (!isEligible(type)) {
+                note(type, "No codec generated for %s, it will be serialized with reflection");
+                continue;
+            }
+
+            try {
+                generate(type);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to write codec: " + e.getMessage(), type);
+            }
+        }
+
+        return false;
+    }
+
+    private void note(TypeElement type, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                String.format(message, type.getQualifiedName()), type);
+    }
+
+    private boolean isEligible(TypeElement type) {
+        Boolean cached = eligible.get(type);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Assume eligible while checking, so self-referencing types terminate
+        eligible.put(type, true);
+        boolean result = checkEligible(type);
+        eligible.put(type, result);
+        return result;
+    }
+
+    private boolean checkEligible(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)
+                || !type.getTypeParameters().isEmpty()) {
+            return false;
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL
+                && (type.getNestingKind() != NestingKind.MEMBER
+                        || !type.getModifiers().contains(Modifier.STATIC))) {
+            return false;
+        }
+
+        boolean constructor = false;
+        for (ExecutableElement method : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (method.getParameters().isEmpty()
+                    && !method.getModifiers().contains(Modifier.PRIVATE)) {
+                constructor = true;
+            }
+        }
+        if (!constructor) {
+            return false;
+        }
+
+        List<Property> properties = getProperties(type);
+        if (properties.isEmpty()) {
+            return false;
+        }
+
+        for (Property property : properties) {
+            Set<Modifier> modifiers = property.element().getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)) {
+                return false;
+            }
+
+            TypeMirror mirror = property.element().asType();
+            if (mirror.getKind().isPrimitive() && primitiveName(mirror) == null) {
+                return false;
+            }
+            if (kind(mirror) == Kind.LIST) {
+                TypeMirror element = listElement(mirror);
+                if (element == null || kind(element) == Kind.PRIMITIVE) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private List<Property> getProperties(TypeElement type) {
+        ArrayList<Property> properties = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            String key = getKey(field);
+            if (key != null) {
+                properties.add(new Property(field, key,
+                        !field.getModifiers().contains(Modifier.PRIVATE)));
+            }
+        }
+        return properties;
+    }
+
+    private String getKey(VariableElement field) {
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if (!annotation.getQualifiedName().contentEquals(FIELD)) {
+                continue;
+            }
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv
+                    .getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    return (String) entry.getValue().getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private Kind kind(TypeMirror mirror) {
+        if (mirror.getKind().isPrimitive()) {
+            return Kind.PRIMITIVE;
+        }
+        if (mirror.getKind() != TypeKind.DECLARED) {
+            return Kind.OTHER;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) mirror).asElement();
+        String name = element.getQualifiedName().toString();
+        if (name.equals("java.lang.String")) {
+            return Kind.STRING;
+        }
+        if (name.equals("java.util.UUID")) {
+            return Kind.UUID;
+        }
+        if (name.equals("java.util.ArrayList")) {
+            return Kind.LIST;
+        }
+        if (element.getKind() == ElementKind.ENUM) {
+            return Kind.ENUM;
+        }
+        if (getProperties(element).size() > 0 && isEligible(element)) {
+            return Kind.CODEC;
+        }
+        return Kind.OTHER;
+    }
+
+    private TypeMirror listElement(TypeMirror mirror) {
+        List<? extends TypeMirror> arguments = ((DeclaredType) mirror).getTypeArguments();
+        if (arguments.size() != 1 || arguments.get(0).getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return arguments.get(0);
+    }
+
+    private String primitiveName(TypeMirror mirror) {
+        return switch (mirror.getKind()) {
+            case BYTE -> "Byte";
+            case SHORT -> "Short";
+            case INT -> "Int";
+            case LONG -> "Long";
+            case FLOAT -> "Float";
+            case DOUBLE -> "Double";
+            case BOOLEAN -> "Boolean";
+            default -> null;
+        };
+    }
+
+    /**
+     * The source form of a type, without any type annotations {@link TypeMirror#toString()} keeps
+     */
+    private String typeName(TypeMirror mirror) {
+        if (mirror.getKind() != TypeKind.DECLARED) {
+            return raw(mirror);
+        }
+
+        List<? extends TypeMirror> arguments = ((DeclaredType) mirror).getTypeArguments();
+        if (arguments.isEmpty()) {
+            return raw(mirror);
+        }
+        return raw(mirror) + "<"
+                + arguments.stream().map(this::typeName).collect(Collectors.joining(", ")) + ">";
+    }
+
+    private String raw(TypeMirror mirror) {
+        if (mirror.getKind().isPrimitive()) {
+            return mirror.getKind().name().toLowerCase();
+        }
+        if (mirror.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) mirror).asElement()).getQualifiedName()
+                    .toString();
+        }
+        return processingEnv.getTypeUtils().erasure(mirror).toString();
+    }
+
+    private String codecName(TypeMirror mirror) {
+        return codecName((TypeElement) ((DeclaredType) mirror).asElement());
+    }
+
+    private String codecName(TypeElement type) {
+        String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName()
+                .toString();
+        String binary = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simple = pkg.isEmpty() ? binary : binary.substring(pkg.length() + 1);
+        return (pkg.isEmpty() ? "" : pkg + ".") + simple + "Codec";
+    }
+
+    private String read(Property property, String target) {
+        if (property.direct()) {
+            return target + "." + property.name();
+        }
+        return "((" + typeName(property.element().asType()) + ") " + property.handle() + ".get("
+                + target + "))";
+    }
+
+    private String write(Property property, String target, String value) {
+        if (property.direct()) {
+            return target + "." + property.name() + " = " + value + ";";
+        }
+        return property.handle() + ".set(" + target + ", (" + typeName(property.element().asType())
+                + ") (" + value + "));";
+    }
+
+    private String encodeElement(TypeMirror mirror, String value) {
+        return switch (kind(mirror)) {
+            case STRING -> NBT + "NbtString.of(" + value + ")";
+            case UUID -> NBT + "NbtHelper.fromUuid(" + value + ")";
+            case ENUM -> NBT + "NbtString.of(" + value + ".toString())";
+            case CODEC -> codecName(mirror) + ".INSTANCE.encode(" + value + ")";
+            default -> "encodeValue(" + raw(mirror) + ".class, " + value + ")";
+        };
+    }
+
+    private String decodeElement(TypeMirror mirror, String element) {
+        return switch (kind(mirror)) {
+            case STRING -> element + ".asString()";
+            case UUID -> NBT + "NbtHelper.toUuid(" + element + ")";
+            case ENUM -> raw(mirror) + ".valueOf(" + element + ".asString())";
+            case CODEC -> codecName(mirror) + ".INSTANCE.decode((" + NBT + "NbtCompound) "
+                    + element + ")";
+            default -> "decodeValue(" + raw(mirror) + ".class, " + element + ")";
+        };
+    }
+
+    private String copyElement(TypeMirror mirror, String value) {
+        return switch (kind(mirror)) {
+            case STRING, UUID, ENUM -> value;
+            case CODEC -> codecName(mirror) + ".INSTANCE.copy(" + value + ")";
+            default -> "copyValue(" + raw(mirror) + ".class, " + value + ")";
+        };
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        String name = codecName(type);
+        int split = name.lastIndexOf('.');
+        String pkg = split < 0 ? "" : name.substring(0, split);
+        String simple = name.substring(split + 1);
+        String target = type.getQualifiedName().toString();
+        List<Property> properties = getProperties(type);
+
+        StringBuilder out = new StringBuilder();
+        if (!pkg.isEmpty()) {
+            out.append("package ").append(pkg).append(";\n\n");
+        }
+        out.append("/**\n * Generated from the {@code @Field} declarations of {@link ").append(target)
+                .append("}. Do not edit.\n */\n");
+        out.append("@SuppressWarnings(\"unchecked\")\n");
+        out.append("public final class ").append(simple).append(" extends ").append(CODEC)
+                .append("<").append(target).append("> {\n");
+
+        List<Property> handles = properties.stream().filter(p -> !p.direct()).toList();
+        for (Property property : handles) {
+            out.append("    private static final java.lang.invoke.VarHandle ")
+                    .append(property.handle()).append(";\n");
+        }
+        if (!handles.isEmpty()) {
+            out.append("\n    static {\n        try {\n");
+            out.append("            java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles\n");
+            out.append("                    .privateLookupIn(").append(target)
+                    .append(".class, java.lang.invoke.MethodHandles.lookup());\n");
+            for (Property property : handles) {
+                out.append("            ").append(property.handle())
+                        .append(" = lookup.findVarHandle(").append(target).append(".class, \"")
+                        .append(property.name()).append("\", ")
+                        .append(raw(property.element().asType())).append(".class);\n");
+            }
+            out.append("        } catch (ReflectiveOperationException e) {\n");
+            out.append("            throw new ExceptionInInitializerError(e);\n");
+            out.append("        }\n    }\n");
+        }
+
+        out.append("\n    public static final ").append(simple).append(" INSTANCE = new ")
+                .append(simple).append("();\n\n");
+        out.append("    private ").append(simple).append("() {}\n");
+
+        generateEncode(out, target, properties);
+        generateDecode(out, target, properties);
+        generateCopy(out, target, properties);
+
+        out.append("}\n");
+
+        try (Writer writer =
+                processingEnv.getFiler().createSourceFile(name, type).openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    private void generateEncode(StringBuilder out, String target, List<Property> properties) {
+        out.append("\n    @Override\n");
+        out.append("    public ").append(NBT).append("NbtCompound encode(").append(target)
+                .append(" item)\n            throws java.io.IOException, ReflectiveOperationException {\n");
+        out.append("        ").append(NBT).append("NbtCompound compound = new ").append(NBT)
+                .append("NbtCompound();\n");
+
+        for (Property property : properties) {
+            TypeMirror mirror = property.element().asType();
+            String key = "\"" + property.key() + "\"";
+            Kind kind = kind(mirror);
+
+            if (kind == Kind.PRIMITIVE) {
+                out.append("        compound.put").append(primitiveName(mirror)).append("(")
+                        .append(key).append(", ").append(read(property, "item")).append(");\n");
+                continue;
+            }
+
+            out.append("        {\n");
+            out.append("            ").append(typeName(mirror)).append(" value = ")
+                    .append(read(property, "item")).append(";\n");
+            out.append("            if (value != null) {\n");
+            switch (kind) {
+                case STRING -> out.append("                compound.putString(").append(key)
+                        .append(", value);\n");
+                case UUID -> out.append("                compound.putUuid(").append(key)
+                        .append(", value);\n");
+                case LIST -> {
+                    TypeMirror element = listElement(mirror);
+                    out.append("                ").append(NBT).append("NbtList list = new ")
+                            .append(NBT).append("NbtList();\n");
+                    out.append("                for (").append(typeName(element))
+                            .append(" element : value) {\n");
+                    out.append("                    list.add(list.size(), ")
+                            .append(encodeElement(element, "element")).append(");\n");
+                    out.append("                }\n");
+                    out.append("                compound.put(").append(key).append(", list);\n");
+                }
+                default -> out.append("                compound.put(").append(key).append(", ")
+                        .append(encodeElement(mirror, "value")).append(");\n");
+            }
+            out.append("            }\n        }\n");
+        }
+
+        out.append("        return compound;\n    }\n");
+    }
+
+    private void generateDecode(StringBuilder out, String target, List<Property> properties) {
+        out.append("\n    @Override\n");
+        out.append("    public ").append(target).append(" decode(").append(NBT)
+                .append("NbtCompound compound)\n            throws java.io.IOException, ReflectiveOperationException {\n");
+        out.append("        ").append(target).append(" item = new ").append(target)
+                .append("();\n");
+
+        for (Property property : properties) {
+            TypeMirror mirror = property.element().asType();
+            String key = "\"" + property.key() + "\"";
+
+            out.append("        if (compound.contains(").append(key).append(")) {\n");
+            switch (kind(mirror)) {
+                case PRIMITIVE -> out.append("            ")
+                        .append(write(property, "item",
+                                "compound.get" + primitiveName(mirror) + "(" + key + ")"))
+                        .append("\n");
+                case STRING -> out.append("            ")
+                        .append(write(property, "item", "compound.getString(" + key + ")"))
+                        .append("\n");
+                case UUID -> out.append("            ")
+                        .append(write(property, "item", "compound.getUuid(" + key + ")"))
+                        .append("\n");
+                case ENUM -> out.append("            ")
+                        .append(write(property, "item",
+                                raw(mirror) + ".valueOf(compound.getString(" + key + "))"))
+                        .append("\n");
+                case CODEC -> out.append("            ")
+                        .append(write(property, "item", codecName(mirror)
+                                + ".INSTANCE.decode(compound.getCompound(" + key + "))"))
+                        .append("\n");
+                case LIST -> {
+                    TypeMirror element = listElement(mirror);
+                    out.append("            ").append(NBT).append("NbtList list = (").append(NBT)
+                            .append("NbtList) compound.get(").append(key).append(");\n");
+                    out.append("            ").append(typeName(mirror))
+                            .append(" values = new java.util.ArrayList<>(list.size());\n");
+                    out.append("            for (int i = 0; i < list.size(); i++) {\n");
+                    out.append("                values.add(")
+                            .append(decodeElement(element, "list.get(i)")).append(");\n");
+                    out.append("            }\n");
+                    out.append("            ").append(write(property, "item", "values"))
+                            .append("\n");
+                }
+                default -> out.append("            ")
+                        .append(write(property, "item", "decodeValue(" + raw(mirror)
+                                + ".class, compound.get(" + key + "))"))
+                        .append("\n");
+            }
+            out.append("        }\n");
+        }
+
+        out.append("        return item;\n    }\n");
+    }
+
+    private void generateCopy(StringBuilder out, String target, List<Property> properties) {
+        out.append("\n    @Override\n");
+        out.append("    public ").append(target).append(" copy(").append(target)
+                .append(" item) throws ReflectiveOperationException {\n");
+        out.append("        ").append(target).append(" copy = new ").append(target)
+                .append("();\n");
+
+        for (Property property : properties) {
+            TypeMirror mirror = property.element().asType();
+            Kind kind = kind(mirror);
+
+            if (kind == Kind.PRIMITIVE || kind == Kind.STRING || kind == Kind.UUID
+                    || kind == Kind.ENUM) {
+                out.append("        ").append(write(property, "copy", read(property, "item")))
+                        .append("\n");
+                continue;
+            }
+
+            out.append("        {\n");
+            out.append("            ").append(typeName(mirror)).append(" value = ")
+                    .append(read(property, "item")).append(";\n");
+            if (kind == Kind.LIST) {
+                TypeMirror element = listElement(mirror);
+                out.append("            ").append(typeName(mirror)).append(" values = null;\n");
+                out.append("            if (value != null) {\n");
+                out.append("                values = new java.util.ArrayList<>(value.size());\n");
+                out.append("                for (").append(typeName(element))
+                        .append(" element : value) {\n");
+                out.append("                    values.add(")
+                        .append(copyElement(element, "element")).append(");\n");
+                out.append("                }\n");
+                out.append("            }\n");
+                out.append("            ").append(write(property, "copy", "values")).append("\n");
+            } else {
+                out.append("            ").append(write(property, "copy",
+                        "value == null ? null : " + copyElement(mirror, "value"))).append("\n");
+            }
+            out.append("        }\n");
+        }
+
+        out.append("        return copy;\n    }\n");
+    }
+}
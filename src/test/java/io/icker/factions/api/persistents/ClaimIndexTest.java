@@ -0,0 +1,135 @@
+package io.icker.factions.api.persistents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import io.icker.factions.util.DimensionHandle;
+import net.minecraft.util.Formatting;
+
+/**
+ * The per-faction claim index answers from the claims of one faction, so its results and claiming
+ * and unclaiming do not depend on how many claims other factions hold. Stores are loaded from the
+ * empty game directory the test task runs in.
+ */
+class ClaimIndexTest {
+    private static final DimensionHandle OVERWORLD = DimensionHandle.of("minecraft:overworld");
+    private static final DimensionHandle NETHER = DimensionHandle.of("minecraft:the_nether");
+
+    private static final int OTHERS = 20_000;
+    private static final int OTHER_FACTIONS = 10;
+    private static final int WIDTH = 1000;
+
+    @Test
+    void factionViewsIgnoreOtherClaims() {
+        for (int others : new int[] {OTHERS, OTHERS * 10}) {
+            HashMap<UUID, Set<String>> otherClaims = fill(others);
+            UUID faction = addFaction();
+
+            // Negative coordinates never collide with the claims of other factions
+            HashSet<String> own = new HashSet<String>();
+            for (int i = 1; i <= 100; i++) {
+                Claim claim = new Claim(-i, -1, i <= 60 ? OVERWORLD : NETHER, faction);
+                Claim.add(claim);
+                own.add(claim.getKey());
+            }
+
+            assertEquals(100, Claim.countByFaction(faction));
+            assertEquals(60, Claim.countByFaction(faction, OVERWORLD));
+            assertEquals(40, Claim.countByFaction(faction, NETHER));
+            assertEquals(own, keys(Claim.getByFaction(faction)));
+            assertEquals(40, Claim.getByFaction(faction, NETHER).size());
+            assertTrue(own.containsAll(keys(Claim.getByFaction(faction, NETHER))));
+
+            for (int i = 1; i <= 50; i++) {
+                Claim claim = Claim.get(-i, -1, OVERWORLD.getId());
+                own.remove(claim.getKey());
+                claim.remove();
+            }
+            assertEquals(50, Claim.countByFaction(faction));
+            assertEquals(10, Claim.countByFaction(faction, OVERWORLD));
+            assertEquals(own, keys(Claim.getByFaction(faction)));
+
+            for (Claim claim : Claim.getByFaction(faction)) {
+                claim.remove();
+            }
+            assertEquals(0, Claim.countByFaction(faction));
+            assertTrue(Claim.getByFaction(faction).isEmpty());
+            assertTrue(Claim.getByFaction(faction, OVERWORLD).isEmpty());
+
+            // Every other faction still sees exactly its own claims
+            for (UUID other : otherClaims.keySet()) {
+                assertEquals(otherClaims.get(other).size(), Claim.countByFaction(other));
+                assertEquals(otherClaims.get(other), keys(Claim.getByFaction(other)));
+            }
+        }
+    }
+
+    @Test
+    void claimingOverAnotherFactionMovesTheClaim() {
+        for (int others : new int[] {OTHERS, OTHERS * 10}) {
+            HashMap<UUID, Set<String>> otherClaims = fill(others);
+            Claim taken = Claim.get(0, 0, OVERWORLD.getId());
+            UUID previousOwner = taken.factionID;
+            Set<String> previousClaims = otherClaims.get(previousOwner);
+            UUID faction = addFaction();
+
+            Claim claim = new Claim(0, 0, OVERWORLD, faction);
+            Claim.add(claim);
+            previousClaims.remove(claim.getKey());
+
+            assertSame(claim, Claim.get(0, 0, OVERWORLD.getId()));
+            assertEquals(Set.of(claim.getKey()), keys(Claim.getByFaction(faction)));
+            assertEquals(previousClaims.size(), Claim.countByFaction(previousOwner));
+            assertEquals(previousClaims, keys(Claim.getByFaction(previousOwner)));
+
+            claim.remove();
+            assertNull(Claim.get(0, 0, OVERWORLD.getId()));
+            assertEquals(0, Claim.countByFaction(faction));
+            assertEquals(previousClaims, keys(Claim.getByFaction(previousOwner)));
+        }
+    }
+
+    /**
+     * Reloads the empty stores and claims a grid of the overworld for other factions
+     *
+     * @return The keys of the claims of each other faction
+     */
+    private static HashMap<UUID, Set<String>> fill(int count) {
+        Faction.load();
+        Claim.load();
+
+        UUID[] factions = new UUID[OTHER_FACTIONS];
+        HashMap<UUID, Set<String>> claims = new HashMap<UUID, Set<String>>();
+        for (int i = 0; i < factions.length; i++) {
+            factions[i] = addFaction();
+            claims.put(factions[i], new HashSet<String>());
+        }
+
+        for (int i = 0; i < count; i++) {
+            UUID faction = factions[i % factions.length];
+            Claim claim = new Claim(i % WIDTH, i / WIDTH, OVERWORLD, faction);
+            Claim.add(claim);
+            claims.get(faction).add(claim.getKey());
+        }
+        return claims;
+    }
+
+    private static UUID addFaction() {
+        Faction faction = new Faction("Test", "", "", Formatting.WHITE, false);
+        Faction.add(faction);
+        return faction.getID();
+    }
+
+    private static Set<String> keys(List<Claim> claims) {
+        return claims.stream().map(Claim::getKey).collect(Collectors.toSet());
+    }
+}
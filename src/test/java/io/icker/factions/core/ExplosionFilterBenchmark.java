@@ -0,0 +1,136 @@
+package io.icker.factions.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.api.persistents.Faction;
+import io.icker.factions.api.persistents.Relationship.Permissions;
+import io.icker.factions.api.persistents.User;
+import io.icker.factions.util.DimensionHandle;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Times filtering the blocks of a chain of TNT explosions once per explosion, resolving each chunk
+ * once, against checking the claim of every block. Both must keep exactly the same blocks. Times
+ * are printed, not asserted, as they depend on the machine running the tests.
+ */
+class ExplosionFilterBenchmark {
+    private static final DimensionHandle OVERWORLD = DimensionHandle.of("minecraft:overworld");
+
+    private static final int TNT = 100;
+    private static final int RADIUS = 4;
+    private static final int ROUNDS = 50;
+
+    @Test
+    void batchFilterMatchesPerBlockChecks() {
+        Faction.load();
+        User.load();
+        Claim.load();
+
+        // Chunks cycle between wilderness, a claim with more power than land and a claim of a
+        // faction without power, which explosions may destroy
+        UUID guarded = addFaction(1000);
+        UUID overextended = addFaction(0);
+        for (int x = -2; x <= 30; x++) {
+            for (int z = -2; z <= 16; z++) {
+                int kind = Math.floorMod(x + z, 3);
+                if (kind != 0) {
+                    Claim.add(new Claim(x, z, OVERWORLD, kind == 1 ? guarded : overextended));
+                }
+            }
+        }
+
+        List<List<BlockPos>> explosions = chain();
+        int total = explosions.stream().mapToInt(List::size).sum();
+
+        long batch = Long.MAX_VALUE;
+        long perBlock = Long.MAX_VALUE;
+        List<List<BlockPos>> batchKept = null;
+        List<List<BlockPos>> perBlockKept = null;
+        for (int round = 0; round < ROUNDS * 2; round++) {
+            List<List<BlockPos>> blocks = copy(explosions);
+            long start = System.nanoTime();
+            for (List<BlockPos> affected : blocks) {
+                InteractionManager.removeDenied(affected,
+                        InteractionManager.getExposedToExplosion(OVERWORLD, affected));
+            }
+            long time = System.nanoTime() - start;
+            batchKept = blocks;
+
+            blocks = copy(explosions);
+            start = System.nanoTime();
+            for (List<BlockPos> affected : blocks) {
+                affected.removeIf(pos -> {
+                    Claim claim = Claim.getAt(pos, OVERWORLD);
+                    return claim != null && !InteractionManager.isExposedToExplosion(claim,
+                            Permissions.BREAK_BLOCKS);
+                });
+            }
+            long perBlockTime = System.nanoTime() - start;
+            perBlockKept = blocks;
+
+            // The first half warms up the JIT
+            if (round >= ROUNDS) {
+                batch = Math.min(batch, time);
+                perBlock = Math.min(perBlock, perBlockTime);
+            }
+        }
+
+        assertEquals(perBlockKept, batchKept);
+        for (List<BlockPos> kept : batchKept) {
+            for (BlockPos pos : kept) {
+                Claim claim = Claim.getAt(pos, OVERWORLD);
+                assertFalse(claim != null && claim.factionID.equals(guarded));
+            }
+        }
+
+        System.out.printf("%d TNT, %d blocks, best of %d rounds in ms: batch %.3f, per block %.3f"
+                + "%n", TNT, total, ROUNDS, batch / 1e6, perBlock / 1e6);
+    }
+
+    /**
+     * The blocks within {@link #RADIUS} of each TNT of a diagonal chain, one list per explosion
+     */
+    private static List<List<BlockPos>> chain() {
+        ArrayList<List<BlockPos>> explosions = new ArrayList<List<BlockPos>>(TNT);
+        for (int i = 0; i < TNT; i++) {
+            BlockPos center = new BlockPos(i * 4, 64, i * 2);
+            ArrayList<BlockPos> affected = new ArrayList<BlockPos>();
+            for (int dx = -RADIUS; dx <= RADIUS; dx++) {
+                for (int dy = -RADIUS; dy <= RADIUS; dy++) {
+                    for (int dz = -RADIUS; dz <= RADIUS; dz++) {
+                        if (dx * dx + dy * dy + dz * dz <= RADIUS * RADIUS) {
+                            affected.add(center.add(dx, dy, dz));
+                        }
+                    }
+                }
+            }
+            explosions.add(affected);
+        }
+        return explosions;
+    }
+
+    private static List<List<BlockPos>> copy(List<List<BlockPos>> explosions) {
+        ArrayList<List<BlockPos>> copies = new ArrayList<List<BlockPos>>(explosions.size());
+        for (List<BlockPos> affected : explosions) {
+            copies.add(new ArrayList<BlockPos>(affected));
+        }
+        return copies;
+    }
+
+    private static UUID addFaction(int adminPower) {
+        Faction faction = new Faction("Test", "", "", Formatting.WHITE, false);
+        faction.guest_permissions.remove(Permissions.BREAK_BLOCKS);
+        Faction.add(faction);
+        if (adminPower > 0) {
+            faction.addAdminPower(adminPower);
+        }
+        return faction.getID();
+    }
+}
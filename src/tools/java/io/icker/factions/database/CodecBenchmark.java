@@ -0,0 +1,274 @@
+package io.icker.factions.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.UUID;
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.api.persistents.User.Rank;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+
+/**
+ * Times saving and loading a synthetic claim store without starting Minecraft. Kept in the database
+ * package for access to both codecs.
+ *
+ * <ul>
+ * <li>{@code codecs} compares the generated codec of {@link Claim} with the
+ * {@link ReflectiveCodec} fallback. Saves write a compressed snapshot in the
+ * one-compound-per-record layout, and loads stream it back through {@link SnapshotReader}. Encode
+ * and decode are also timed alone, on the records in memory.
+ * <li>{@code layouts} compares that layout with the columnar {@link ClaimFormat}, written and read
+ * as {@link SnapshotStorage} does, and reports the size of each file.
+ * </ul>
+ *
+ * <pre>
+ * [codecs|layouts] [claims] [rounds]
+ * </pre>
+ */
+public class CodecBenchmark {
+    private static final String KEY = "CORE";
+    private static final int FACTIONS = 1000;
+    private static final String[] LEVELS =
+            {"minecraft:overworld", "minecraft:the_nether", "minecraft:the_end"};
+
+    private static class Timings {
+        private long encode = Long.MAX_VALUE;
+        private long save = Long.MAX_VALUE;
+        private long decode = Long.MAX_VALUE;
+        private long load = Long.MAX_VALUE;
+
+        private void print(String name) {
+            System.out.printf("%-10s %8d %8d %8d %8d%n", name, encode / 1_000_000,
+                    save / 1_000_000, decode / 1_000_000, load / 1_000_000);
+        }
+    }
+
+    private interface Layout {
+        void write(List<Claim> claims, File file) throws IOException, ReflectiveOperationException;
+
+        void read(File file, Collection<Claim> claims)
+                throws IOException, ReflectiveOperationException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "codecs";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Codec<Claim> generated = Codec.find(Claim.class);
+        if (generated == null) {
+            System.err.println("No generated codec for Claim, compile with the codec processor");
+            System.exit(1);
+        }
+
+        if (mode.equals("codecs")) {
+            compareCodecs(generated, generate(count), rounds);
+        } else if (mode.equals("layouts")) {
+            compareLayouts(generated, generate(count), rounds);
+        } else {
+            System.err.println("Usage: [codecs|layouts] [claims] [rounds]");
+            System.exit(2);
+        }
+    }
+
+    private static void compareCodecs(Codec<Claim> generated, List<Claim> claims, int rounds)
+            throws IOException, ReflectiveOperationException {
+        Codec<Claim> reflective = new ReflectiveCodec<Claim>(Claim.class);
+        File file = File.createTempFile("claim", ".dat");
+        file.deleteOnExit();
+
+        // Alternate the codecs, so neither always runs on a warmer JIT or a fuller heap
+        Timings generatedTimings = new Timings();
+        Timings reflectiveTimings = new Timings();
+        for (int round = 0; round < rounds; round++) {
+            run(generated, claims, file, generatedTimings);
+            run(reflective, claims, file, reflectiveTimings);
+        }
+
+        System.out.printf("%d claims, %d KiB snapshot, best of %d rounds in ms%n", claims.size(),
+                file.length() / 1024, rounds);
+        System.out.printf("%-10s %8s %8s %8s %8s%n", "", "encode", "save", "decode", "load");
+        generatedTimings.print("generated");
+        reflectiveTimings.print("reflective");
+        System.out.printf("Reflection is %.2fx slower to save and %.2fx slower to load%n",
+                (double) reflectiveTimings.save / generatedTimings.save,
+                (double) reflectiveTimings.load / generatedTimings.load);
+    }
+
+    private static void compareLayouts(Codec<Claim> codec, List<Claim> claims, int rounds)
+            throws IOException, ReflectiveOperationException {
+        Layout records = new Layout() {
+            @Override
+            public void write(List<Claim> items, File file)
+                    throws IOException, ReflectiveOperationException {
+                NbtList list = new NbtList();
+                for (Claim claim : items) {
+                    list.add(list.size(), codec.encode(claim));
+                }
+
+                NbtCompound fileData = new NbtCompound();
+                fileData.putLong("Generation", 1);
+                fileData.put(KEY, list);
+                NbtIo.writeCompressed(fileData, file);
+            }
+
+            @Override
+            public void read(File file, Collection<Claim> items)
+                    throws IOException, ReflectiveOperationException {
+                SnapshotReader.read(file, KEY, record -> items.add(codec.decode(record)));
+            }
+        };
+
+        Layout columns = new Layout() {
+            @Override
+            public void write(List<Claim> items, File file) throws IOException {
+                NbtCompound fileData = new NbtCompound();
+                fileData.putLong("Generation", 1);
+                fileData.putInt("Version", ClaimFormat.INSTANCE.getVersion());
+                ClaimFormat.INSTANCE.write(items, fileData);
+                NbtIo.writeCompressed(fileData, file);
+            }
+
+            @Override
+            public void read(File file, Collection<Claim> items)
+                    throws IOException, ReflectiveOperationException {
+                NbtCompound header = SnapshotReader.read(file, KEY, record -> {});
+                ClaimFormat.INSTANCE.read(header, items::add);
+            }
+        };
+
+        File recordFile = File.createTempFile("claim-records", ".dat");
+        File columnFile = File.createTempFile("claim-columns", ".dat");
+        recordFile.deleteOnExit();
+        columnFile.deleteOnExit();
+
+        long[] recordTimes = {Long.MAX_VALUE, Long.MAX_VALUE};
+        long[] columnTimes = {Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < rounds; round++) {
+            time(records, claims, recordFile, recordTimes);
+            time(columns, claims, columnFile, columnTimes);
+        }
+
+        System.out.printf("%d claims, best of %d rounds%n", claims.size(), rounds);
+        System.out.printf("%-10s %10s %10s %10s%n", "", "KiB", "write ms", "read ms");
+        System.out.printf("%-10s %10d %10d %10d%n", "records", recordFile.length() / 1024,
+                recordTimes[0] / 1_000_000, recordTimes[1] / 1_000_000);
+        System.out.printf("%-10s %10d %10d %10d%n", "columns", columnFile.length() / 1024,
+                columnTimes[0] / 1_000_000, columnTimes[1] / 1_000_000);
+        System.out.printf("The columnar file is %.1fx smaller and reads %.2fx faster%n",
+                (double) recordFile.length() / columnFile.length(),
+                (double) recordTimes[1] / columnTimes[1]);
+    }
+
+    /**
+     * Claims of {@link #FACTIONS} factions, a third of them in each of the vanilla dimensions
+     */
+    private static List<Claim> generate(int count) {
+        Random random = new Random(0);
+        UUID[] factions = new UUID[FACTIONS];
+        for (int i = 0; i < factions.length; i++) {
+            factions[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+
+        int width = (int) Math.ceil(Math.sqrt(count));
+        ArrayList<Claim> claims = new ArrayList<Claim>(count);
+        for (int i = 0; i < count; i++) {
+            Claim claim = new Claim();
+            claim.x = i % width - width / 2;
+            claim.z = i / width - width / 2;
+            claim.level = LEVELS[i % LEVELS.length];
+            claim.factionID = factions[random.nextInt(factions.length)];
+            claim.accessLevel = i % 10 == 0 ? Rank.COMMANDER : Rank.MEMBER;
+            claims.add(claim);
+        }
+        return claims;
+    }
+
+    private static void run(Codec<Claim> codec, List<Claim> claims, File file, Timings timings)
+            throws IOException, ReflectiveOperationException {
+        long start = System.nanoTime();
+        NbtList list = new NbtList();
+        for (Claim claim : claims) {
+            list.add(list.size(), codec.encode(claim));
+        }
+        long encoded = System.nanoTime();
+
+        NbtCompound fileData = new NbtCompound();
+        fileData.put(KEY, list);
+        NbtIo.writeCompressed(fileData, file);
+        long saved = System.nanoTime();
+
+        timings.encode = Math.min(timings.encode, encoded - start);
+        timings.save = Math.min(timings.save, saved - start);
+
+        ArrayList<Claim> decoded = new ArrayList<Claim>(claims.size());
+        start = System.nanoTime();
+        for (int i = 0; i < list.size(); i++) {
+            decoded.add(codec.decode(list.getCompound(i)));
+        }
+        timings.decode = Math.min(timings.decode, System.nanoTime() - start);
+        verify(claims, decoded);
+
+        // Drop the records held in memory before timing the load
+        list = null;
+        fileData = null;
+        decoded = null;
+
+        ArrayList<Claim> loaded = new ArrayList<Claim>(claims.size());
+        start = System.nanoTime();
+        SnapshotReader.read(file, KEY, record -> loaded.add(codec.decode(record)));
+        timings.load = Math.min(timings.load, System.nanoTime() - start);
+        verify(claims, loaded);
+    }
+
+    /**
+     * Keeps the fastest write and read of a layout in {@code times}
+     */
+    private static void time(Layout layout, List<Claim> claims, File file, long[] times)
+            throws IOException, ReflectiveOperationException {
+        long start = System.nanoTime();
+        layout.write(claims, file);
+        times[0] = Math.min(times[0], System.nanoTime() - start);
+
+        ArrayList<Claim> loaded = new ArrayList<Claim>(claims.size());
+        start = System.nanoTime();
+        layout.read(file, loaded);
+        times[1] = Math.min(times[1], System.nanoTime() - start);
+
+        // The columnar layout groups claims by dimension and faction, so compare regardless of
+        // order
+        if (loaded.size() != claims.size() || checksum(loaded) != checksum(claims)) {
+            throw new IllegalStateException("Claims read back differ from the claims written");
+        }
+    }
+
+    private static long checksum(List<Claim> claims) {
+        long sum = 0;
+        for (Claim claim : claims) {
+            sum += Objects.hash(claim.x, claim.z, claim.level, claim.factionID, claim.accessLevel);
+        }
+        return sum;
+    }
+
+    private static void verify(List<Claim> expected, List<Claim> actual) {
+        if (expected.size() != actual.size()) {
+            throw new IllegalStateException(
+                    "Read " + actual.size() + " claims, wrote " + expected.size());
+        }
+
+        for (int i = 0; i < expected.size(); i++) {
+            Claim a = expected.get(i);
+            Claim b = actual.get(i);
+            if (a.x != b.x || a.z != b.z || !a.level.equals(b.level)
+                    || !a.factionID.equals(b.factionID) || a.accessLevel != b.accessLevel) {
+                throw new IllegalStateException("Claim " + a.getKey() + " read as " + b.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package io.icker.factions.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+import org.jetbrains.annotations.Nullable;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+
+/**
+ * Inspects and repairs the factions data files of a stopped server, without starting Minecraft.
+ * Files are streamed a record at a time in several passes, so memory grows with the number of
+ * factions rather than with the size of the files.
+ *
+ * <pre>
+ * inspect &lt;directory&gt; [--levels &lt;level,...&gt;]
+ * repair &lt;directory&gt; [--levels &lt;level,...&gt;] [--output &lt;directory&gt;]
+ * </pre>
+ *
+ * Repairing applies the same rules as the audit run at server start and writes fresh snapshots,
+ * with the journals folded in, to the output directory ({@code <directory>/repaired} by default).
+ * Dimensions are only checked when {@code --levels} lists the valid ones, as they are not known
+ * without the server.
+ *
+ * <p>Only the nbt backend keeps its data in these files. The tool refuses to run when the server
+ * config, {@code ../config/factions.json} next to the directory, selects another backend, or
+ * without a readable config when the directory holds a SQLite database.
+ */
+public class DataTool {
+    private static final int TOP_FACTIONS = 10;
+
+    private final RecordFile factions;
+    private final RecordFile users;
+    private final RecordFile claims;
+    @Nullable
+    private final Set<String> levels;
+
+    private final HashMap<UUID, String> names = new HashMap<UUID, String>();
+    private final HashSet<UUID> owned = new HashSet<UUID>();
+    private final HashSet<UUID> kept = new HashSet<UUID>();
+    private final HashMap<UUID, Integer> members = new HashMap<UUID, Integer>();
+    private final HashMap<UUID, Integer> claimCounts = new HashMap<UUID, Integer>();
+    private final TreeMap<String, Integer> levelCounts = new TreeMap<String, Integer>();
+
+    private int relationships = 0;
+    private int danglingRelationships = 0;
+    private int invalidHomes = 0;
+    private int userCount = 0;
+    private int usersInFaction = 0;
+    private int usersInDeletedFactions = 0;
+    private int claimCount = 0;
+    private int orphanedClaims = 0;
+    private int invalidLevelClaims = 0;
+    private int keptClaims = 0;
+
+    private DataTool(File directory, @Nullable Set<String> levels) {
+        this.factions = RecordFile.byId(directory, "faction");
+        this.users = RecordFile.byId(directory, "user");
+        this.claims = RecordFile.claims(directory);
+        this.levels = levels;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || !(args[0].equals("inspect") || args[0].equals("repair"))) {
+            usage();
+            return;
+        }
+
+        File directory = new File(args[1]);
+        Set<String> levels = null;
+        File output = new File(directory, "repaired");
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--levels") && i + 1 < args.length) {
+                levels = new HashSet<String>(Arrays.asList(args[++i].split(",")));
+            } else if (args[i].equals("--output") && i + 1 < args.length) {
+                output = new File(args[++i]);
+            } else {
+                usage();
+                return;
+            }
+        }
+
+        String backend = getOtherBackend(directory);
+        if (backend != null) {
+            System.err.println(backend);
+            System.err.println("Only data stored by the nbt backend can be inspected or repaired");
+            System.exit(1);
+        }
+
+        if (!new File(directory, "faction.dat").exists()) {
+            System.err.println("No faction.dat in " + directory);
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        DataTool tool = new DataTool(directory, levels);
+        tool.inspect();
+        tool.print();
+
+        if (args[0].equals("repair")) {
+            tool.repair(output);
+        }
+        System.out.printf("Done in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return Why the snapshot files of a directory do not hold the live data, or null when they do
+     */
+    @Nullable
+    private static String getOtherBackend(File directory) {
+        File config = new File(directory.getAbsoluteFile().getParentFile(), "config/factions.json");
+        if (config.isFile()) {
+            try (Reader reader = Files.newBufferedReader(config.toPath())) {
+                JsonObject root = JsonParser.parseReader(reader).getAsJsonObject();
+                JsonObject database = root.getAsJsonObject("database");
+                String backend = database != null && database.has("backend")
+                        ? database.get("backend").getAsString()
+                        : "nbt";
+                return backend.equals("nbt") ? null
+                        : String.format("%s selects the %s backend", config, backend);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not read " + config + ": " + e.getMessage());
+            }
+        }
+
+        File sqlite = new File(directory, "factions.db");
+        if (sqlite.exists()) {
+            return String.format("%s exists, so the data is likely stored by the sqlite backend",
+                    sqlite);
+        }
+        return null;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: inspect <directory> [--levels <level,...>]");
+        System.err.println("       repair <directory> [--levels <level,...>] [--output <dir>]");
+        System.exit(2);
+    }
+
+    /**
+     * Collects statistics and decides which factions survive the audit, which removes factions
+     * without an owner
+     */
+    private void inspect() throws IOException, ReflectiveOperationException {
+        factions.forEach(record -> names.put(record.getUuid("ID"), record.getString("Name")));
+
+        users.forEach(record -> {
+            userCount++;
+            if (!record.containsUuid("FactionID")) {
+                return;
+            }
+
+            UUID faction = record.getUuid("FactionID");
+            if (!names.containsKey(faction)) {
+                usersInDeletedFactions++;
+                return;
+            }
+
+            usersInFaction++;
+            members.merge(faction, 1, Integer::sum);
+            if (record.getString("Rank").equals("OWNER")) {
+                owned.add(faction);
+            }
+        });
+
+        for (UUID faction : names.keySet()) {
+            if (owned.contains(faction)) {
+                kept.add(faction);
+            }
+        }
+
+        factions.forEach(record -> {
+            for (UUID target : getRelationshipTargets(record)) {
+                relationships++;
+                if (!names.containsKey(target)) {
+                    danglingRelationships++;
+                }
+            }
+            if (record.contains("Home") && !isValidLevel(
+                    record.getCompound("Home").getString("Level"))) {
+                invalidHomes++;
+            }
+        });
+
+        claims.forEach(record -> {
+            claimCount++;
+            UUID faction = record.getUuid("FactionID");
+            String level = record.getString("Level");
+            claimCounts.merge(faction, 1, Integer::sum);
+            levelCounts.merge(level, 1, Integer::sum);
+
+            if (!names.containsKey(faction)) {
+                orphanedClaims++;
+            } else if (!isValidLevel(level)) {
+                invalidLevelClaims++;
+            } else if (kept.contains(faction)) {
+                keptClaims++;
+            }
+        });
+    }
+
+    private void print() {
+        System.out.printf("Factions: %d (%d without an owner)%n", names.size(),
+                names.size() - kept.size());
+        System.out.printf("Relationships: %d (%d dangling)%n", relationships,
+                danglingRelationships);
+        if (levels != null) {
+            System.out.printf("Homes in unknown dimensions: %d%n", invalidHomes);
+        }
+
+        System.out.printf("Users: %d (%d in a faction, %d in deleted factions)%n", userCount,
+                usersInFaction, usersInDeletedFactions);
+
+        System.out.printf("Claims: %d (%d orphaned", claimCount, orphanedClaims);
+        if (levels != null) {
+            System.out.printf(", %d in unknown dimensions", invalidLevelClaims);
+        }
+        System.out.println(")");
+        for (Map.Entry<String, Integer> entry : levelCounts.entrySet()) {
+            System.out.printf("  %s: %d%n", entry.getKey(), entry.getValue());
+        }
+
+        System.out.println("Claims per faction:");
+        ArrayList<Map.Entry<UUID, Integer>> counts =
+                new ArrayList<Map.Entry<UUID, Integer>>(claimCounts.entrySet());
+        counts.sort(Map.Entry.<UUID, Integer>comparingByValue().reversed());
+        for (Map.Entry<UUID, Integer> entry : counts.subList(0,
+                Math.min(TOP_FACTIONS, counts.size()))) {
+            String name = names.getOrDefault(entry.getKey(), "<deleted>");
+            System.out.printf("  %s (%s): %d claims, %d members%n", name, entry.getKey(),
+                    entry.getValue(), members.getOrDefault(entry.getKey(), 0));
+        }
+        if (counts.size() > TOP_FACTIONS) {
+            System.out.printf("  ... %d more%n", counts.size() - TOP_FACTIONS);
+        }
+    }
+
+    /**
+     * Writes audited copies of every file. Removed factions take their claims and memberships
+     * with them, as in the audits at server start.
+     */
+    private void repair(File output) throws IOException, ReflectiveOperationException {
+        output.mkdirs();
+
+        try (SnapshotWriter writer = new SnapshotWriter(new File(output, "faction.dat"),
+                factions.getGeneration() + 1, kept.size())) {
+            factions.forEach(record -> {
+                if (!kept.contains(record.getUuid("ID"))) {
+                    return;
+                }
+
+                NbtList relations = record.getList("Relationships", NbtElement.COMPOUND_TYPE);
+                relations.removeIf(
+                        relation -> !kept.contains(((NbtCompound) relation).getUuid("Target")));
+                if (record.contains("Home") && !isValidLevel(
+                        record.getCompound("Home").getString("Level"))) {
+                    record.remove("Home");
+                }
+                writer.write(record);
+            });
+        }
+
+        try (SnapshotWriter writer = new SnapshotWriter(new File(output, "user.dat"),
+                users.getGeneration() + 1, userCount)) {
+            users.forEach(record -> {
+                if (record.containsUuid("FactionID")
+                        && !kept.contains(record.getUuid("FactionID"))) {
+                    record.remove("FactionID");
+                }
+                if (!record.containsUuid("FactionID")) {
+                    record.remove("Rank");
+                }
+                writer.write(record);
+            });
+        }
+
+        try (SnapshotWriter writer = new SnapshotWriter(new File(output, "claim.dat"),
+                claims.getGeneration() + 1, keptClaims)) {
+            claims.forEach(record -> {
+                if (kept.contains(record.getUuid("FactionID"))
+                        && isValidLevel(record.getString("Level"))) {
+                    writer.write(record);
+                }
+            });
+        }
+
+        System.out.printf("Wrote %d factions, %d users and %d claims to %s%n", kept.size(),
+                userCount, keptClaims, output);
+        System.out.println("Stop the server before copying them over the originals");
+    }
+
+    private boolean isValidLevel(String level) {
+        return levels == null || levels.contains(level);
+    }
+
+    private static List<UUID> getRelationshipTargets(NbtCompound record) {
+        NbtList relations = record.getList("Relationships", NbtElement.COMPOUND_TYPE);
+        ArrayList<UUID> targets = new ArrayList<UUID>(relations.size());
+        for (int i = 0; i < relations.size(); i++) {
+            targets.add(relations.getCompound(i).getUuid("Target"));
+        }
+        return targets;
+    }
+
+    /**
+     * Writes a compressed snapshot in the default layout one record at a time. The record count
+     * is part of the list header, so it has to be known up front.
+     */
+    private static class SnapshotWriter implements AutoCloseable {
+        private final File file;
+        private final File temp;
+        private final int count;
+        private final DataOutputStream output;
+        private int written = 0;
+
+        private SnapshotWriter(File file, long generation, int count) throws IOException {
+            this.file = file;
+            this.temp = new File(file.getPath() + ".tmp");
+            this.count = count;
+            this.output = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))));
+
+            output.writeByte(NbtElement.COMPOUND_TYPE);
+            output.writeUTF("");
+            output.writeByte(NbtElement.LONG_TYPE);
+            output.writeUTF("Generation");
+            output.writeLong(generation);
+            output.writeByte(NbtElement.LIST_TYPE);
+            output.writeUTF("CORE");
+            output.writeByte(count > 0 ? NbtElement.COMPOUND_TYPE : NbtElement.END_TYPE);
+            output.writeInt(count);
+        }
+
+        private void write(NbtCompound record) throws IOException {
+            record.write(output);
+            written++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.writeByte(NbtElement.END_TYPE);
+            output.close();
+
+            if (written != count) {
+                temp.delete();
+                throw new IOException(String.format("Wrote %d records to %s, expected %d",
+                        written, file, count));
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.icker.factions.tools;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.database.ClaimFormat;
+import io.icker.factions.database.SnapshotReader;
+import io.icker.factions.database.SnapshotReader.RecordConsumer;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtIo;
+
+/**
+ * One store on disk, its snapshot file plus the journal of changes made since, read as a stream
+ * of records in the default one-compound-per-record layout. Only journal records and the snapshot
+ * records they touch are held in memory.
+ */
+class RecordFile {
+    private static final byte DELETE = 1;
+
+    final String name;
+    private final File snapshot;
+    private final File journal;
+    private final Function<NbtCompound, String> key;
+
+    private long generation = 0;
+
+    RecordFile(File directory, String name, Function<NbtCompound, String> key) {
+        this.name = name;
+        this.snapshot = new File(directory, name + ".dat");
+        this.journal = new File(directory, name + ".journal");
+        this.key = key;
+    }
+
+    static RecordFile byId(File directory, String name) {
+        return new RecordFile(directory, name, record -> record.getUuid("ID").toString());
+    }
+
+    static RecordFile claims(File directory) {
+        return new RecordFile(directory, "claim", record -> String.format("%s-%d-%d",
+                record.getString("Level"), record.getInt("X"), record.getInt("Z")));
+    }
+
+    /**
+     * @return The generation of the snapshot, known after the first {@link #forEach}
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Passes every record to the consumer, with the journal of the snapshot's generation applied
+     */
+    void forEach(RecordConsumer consumer) throws IOException, ReflectiveOperationException {
+        HashMap<Long, LinkedHashMap<String, NbtCompound>> changes = readJournal();
+        HashSet<String> touched = new HashSet<String>();
+        for (LinkedHashMap<String, NbtCompound> generationChanges : changes.values()) {
+            touched.addAll(generationChanges.keySet());
+        }
+
+        // The generation is only known once the whole snapshot has been read, so records the
+        // journal may replace wait until then
+        HashMap<String, NbtCompound> pending = new HashMap<String, NbtCompound>();
+        RecordConsumer snapshotConsumer = record -> {
+            String recordKey = key.apply(record);
+            if (touched.contains(recordKey)) {
+                pending.put(recordKey, record);
+            } else {
+                consumer.accept(record);
+            }
+        };
+
+        if (snapshot.length() > 0) {
+            NbtCompound header = SnapshotReader.read(snapshot, "CORE", snapshotConsumer);
+            generation = header.getLong("Generation");
+            if (header.contains("Version")) {
+                readClaimFormat(header, snapshotConsumer);
+            }
+        }
+
+        LinkedHashMap<String, NbtCompound> current =
+                changes.getOrDefault(generation, new LinkedHashMap<String, NbtCompound>());
+        for (Map.Entry<String, NbtCompound> entry : pending.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                consumer.accept(entry.getValue());
+            }
+        }
+        for (NbtCompound record : current.values()) {
+            if (record.getByte("Op") != DELETE) {
+                consumer.accept(record.getCompound("Data"));
+            }
+        }
+    }
+
+    /**
+     * Reads claims stored in {@link ClaimFormat}, the only snapshot layout besides the default one
+     */
+    private void readClaimFormat(NbtCompound header, RecordConsumer consumer)
+            throws IOException, ReflectiveOperationException {
+        int version = header.getInt("Version");
+        if (!name.equals("claim") || version != ClaimFormat.INSTANCE.getVersion()) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        Exception[] failure = new Exception[1];
+        ClaimFormat.INSTANCE.read(header, claim -> {
+            if (failure[0] != null) {
+                return;
+            }
+            try {
+                consumer.accept(toRecord(claim));
+            } catch (IOException | ReflectiveOperationException e) {
+                failure[0] = e;
+            }
+        });
+
+        if (failure[0] instanceof IOException e) {
+            throw e;
+        } else if (failure[0] instanceof ReflectiveOperationException e) {
+            throw e;
+        }
+    }
+
+    private static NbtCompound toRecord(Claim claim) {
+        NbtCompound record = new NbtCompound();
+        record.putInt("X", claim.x);
+        record.putInt("Z", claim.z);
+        record.putString("Level", claim.level);
+        record.put("FactionID", NbtHelper.fromUuid(claim.factionID));
+        if (claim.accessLevel != null) {
+            record.putString("AccessLevel", claim.accessLevel.name());
+        }
+        return record;
+    }
+
+    /**
+     * @return The latest journal record of every key, by generation
+     */
+    private HashMap<Long, LinkedHashMap<String, NbtCompound>> readJournal() throws IOException {
+        HashMap<Long, LinkedHashMap<String, NbtCompound>> changes =
+                new HashMap<Long, LinkedHashMap<String, NbtCompound>>();
+        if (!journal.exists()) {
+            return changes;
+        }
+
+        int records = 0;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(journal)))) {
+            while (hasMore(input)) {
+                NbtCompound record = NbtIo.read(input);
+                changes.computeIfAbsent(record.getLong("Gen"), gen -> new LinkedHashMap<>())
+                        .put(record.getString("Key"), record);
+                records++;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.printf("Ignoring damaged journal tail after %d records (%s): %s%n",
+                    records, journal, e);
+        }
+        return changes;
+    }
+
+    private static boolean hasMore(DataInputStream input) throws IOException {
+        input.mark(1);
+        boolean more = input.read() != -1;
+        input.reset();
+        return more;
+    }
+}